@@ -0,0 +1,44 @@
+package dev.urls.benchmark;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.service.UrlGeneratorService;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Наполнение репозитория тестовыми ссылками для бенчмарков
+final class BenchmarkData {
+    static final int LINKS_PER_OWNER = 100;
+
+    private BenchmarkData() {
+    }
+
+    // Возвращает пути созданных ссылок; у каждого владельца по LINKS_PER_OWNER ссылок
+    static String[] fill(UrlRepository repository, UrlGeneratorService generator, int size) {
+        String[] paths = new String[size];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            ShortUrl shortUrl;
+            do {
+                long id = repository.getNextUrlId();
+                shortUrl = ShortUrl.builder()
+                        .id(id)
+                        .originalUrl("https://example.com/articles/" + i)
+                        .shortPath(generator.generatePath(id))
+                        .userUuid(owner(i / LINKS_PER_OWNER))
+                        .createdAt(now)
+                        .expiresAt(now.plusDays(30))
+                        .clicksLimit(Integer.MAX_VALUE)
+                        .isActive(true)
+                        .build();
+            } while (!repository.saveIfAbsent(shortUrl));
+            paths[i] = shortUrl.getShortPath();
+        }
+        return paths;
+    }
+
+    static UUID owner(int index) {
+        return new UUID(0x5eed, index);
+    }
+}
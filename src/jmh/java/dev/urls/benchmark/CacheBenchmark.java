@@ -0,0 +1,77 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.CachingUrlRepository;
+import dev.urls.repository.impl.OffHeapUrlRepository;
+import dev.urls.service.UrlGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Поиск по пути при неравномерном (ципфовском) распределении переходов: хранилище offheap
+// без кэша и с кэшем горячих ссылок разного размера. Доля попаданий печатается в конце прогона
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CacheBenchmark {
+    private static final int SIZE = 1_000_000;
+    private static final int SAMPLES = 1 << 20;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    @Param({"0", "10000", "100000"})
+    private int cacheSize;
+
+    private UrlRepository repository;
+    private CachingUrlRepository cache;
+    private String[] requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        repository = new OffHeapUrlRepository();
+        List<String> paths = Arrays.asList(BenchmarkData.fill(repository, generator, SIZE));
+        // Популярность не должна зависеть от порядка создания ссылок
+        Random random = new Random(42);
+        Collections.shuffle(paths, random);
+
+        double[] cumulative = new double[SIZE];
+        double sum = 0;
+        for (int rank = 0; rank < SIZE; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        requests = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            requests[i] = paths.get(Math.min(rank < 0 ? -rank - 1 : rank, SIZE - 1));
+        }
+
+        if (cacheSize > 0) {
+            cache = new CachingUrlRepository(repository, cacheSize);
+            repository = cache;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void printStats() {
+        if (cache != null) System.out.println(System.lineSeparator() + cache.getStats());
+    }
+
+    @Benchmark
+    public Optional<ShortUrl> findByPath() {
+        next = (next + 1) & (SAMPLES - 1);
+        return repository.findByPath(requests[next]);
+    }
+}
@@ -0,0 +1,54 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.RedirectTarget;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import dev.urls.service.impl.UrlServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Переход по ссылке целиком: поиск, проверки, учёт клика.
+// clickShortUrl дополнительно открывает браузер, поэтому замеряется followShortUrl, на котором он построен.
+// Для проверки отсутствия аллокаций запускать с -prof gc.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ClickBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private UrlServiceImpl urlService;
+    private String[] paths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        UrlRepository repository = new UrlRepositoryImpl();
+        paths = BenchmarkData.fill(repository, generator, size);
+        urlService = new UrlServiceImpl(repository, generator, config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        urlService.close();
+    }
+
+    @Benchmark
+    public Optional<String> followShortUrl() {
+        return urlService.followShortUrl(paths[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public RedirectTarget resolveRedirect() {
+        return urlService.resolveRedirect(paths[ThreadLocalRandom.current().nextInt(size)]);
+    }
+}
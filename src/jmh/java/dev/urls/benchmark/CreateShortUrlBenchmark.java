@@ -0,0 +1,53 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import dev.urls.service.impl.UrlServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Создание ссылки при разной заполненности пространства путей.
+// Длина пути уменьшена до 3 символов (62^3 = 238 328 вариантов), чтобы заполнить его заметную долю.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Durl.length=3")
+public class CreateShortUrlBenchmark {
+    private static final int KEYSPACE = 62 * 62 * 62;
+    private static final UUID USER = new UUID(0x5eed, -1);
+
+    @Param({"0.0", "0.5", "0.9", "0.99"})
+    private double fillRatio;
+
+    private UrlServiceImpl urlService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        UrlRepository repository = new UrlRepositoryImpl();
+        BenchmarkData.fill(repository, generator, (int) (KEYSPACE * fillRatio));
+        urlService = new UrlServiceImpl(repository, generator, config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        urlService.close();
+    }
+
+    // Ссылка сразу удаляется через сервис, чтобы заполненность не менялась по ходу замера,
+    // а индексы сервиса (очередь очистки, таблица адресов) не росли
+    @Benchmark
+    public ShortUrl createShortUrl() {
+        ShortUrl shortUrl = urlService.createShortUrl("https://example.com/new", USER, null, null);
+        urlService.deleteShortUrl(shortUrl.getShortPath());
+        return shortUrl;
+    }
+}
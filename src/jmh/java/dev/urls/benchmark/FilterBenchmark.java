@@ -0,0 +1,54 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.FilteringUrlRepository;
+import dev.urls.repository.impl.OffHeapUrlRepository;
+import dev.urls.service.UrlGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Поиск существующих и случайных несуществующих путей в хранилище offheap с фильтром путей и без него
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilterBenchmark {
+    private static final int SIZE = 1_000_000;
+
+    @Param({"false", "true"})
+    private boolean filter;
+
+    private UrlRepository repository;
+    private String[] paths;
+    private String[] missingPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        repository = new OffHeapUrlRepository();
+        paths = BenchmarkData.fill(repository, generator, SIZE);
+        missingPaths = new String[1 << 16];
+        for (int i = 0; i < missingPaths.length; i++) {
+            missingPaths[i] = "-" + generator.generatePath();
+        }
+        if (filter) repository = new FilteringUrlRepository(repository, SIZE, 0.01);
+    }
+
+    @Benchmark
+    public Optional<ShortUrl> findByPathHit() {
+        return repository.findByPath(paths[ThreadLocalRandom.current().nextInt(SIZE)]);
+    }
+
+    @Benchmark
+    public Optional<ShortUrl> findByPathMiss() {
+        return repository.findByPath(missingPaths[ThreadLocalRandom.current().nextInt(missingPaths.length)]);
+    }
+}
@@ -0,0 +1,34 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    @Param({"random", "sequence", "pool"})
+    private String mode;
+
+    private UrlGeneratorService generator;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        System.setProperty("url.generator", mode);
+        generator = new UrlGeneratorService(new AppConfig(), new UrlRepositoryImpl());
+    }
+
+    @Benchmark
+    public String generatePath() {
+        return generator.generatePath(nextId.getAndIncrement());
+    }
+}
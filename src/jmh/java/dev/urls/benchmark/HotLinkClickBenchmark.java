@@ -0,0 +1,76 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.RedirectTarget;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import dev.urls.service.impl.UrlServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Потоки одновременно кликают по одной «вирусной» ссылке: проверка конкуренции за счётчик кликов.
+// Число потоков — измерение замера: каждый метод повторён для 1, 8 и 32 потоков,
+// чтобы рост конкуренции был виден в одном отчёте. Ключ -t перекрывает все три значения
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotLinkClickBenchmark {
+    private UrlServiceImpl urlService;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        UrlRepository repository = new UrlRepositoryImpl();
+        path = BenchmarkData.fill(repository, generator, 1)[0];
+        urlService = new UrlServiceImpl(repository, generator, config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        urlService.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<String> followShortUrl01() {
+        return urlService.followShortUrl(path);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Optional<String> followShortUrl08() {
+        return urlService.followShortUrl(path);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Optional<String> followShortUrl32() {
+        return urlService.followShortUrl(path);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public RedirectTarget resolveRedirect01() {
+        return urlService.resolveRedirect(path);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public RedirectTarget resolveRedirect08() {
+        return urlService.resolveRedirect(path);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public RedirectTarget resolveRedirect32() {
+        return urlService.resolveRedirect(path);
+    }
+}
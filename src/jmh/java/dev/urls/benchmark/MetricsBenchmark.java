@@ -0,0 +1,58 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.metrics.MetricsRegistry;
+import dev.urls.model.RedirectTarget;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.MetricsUrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import dev.urls.service.UrlService;
+import dev.urls.service.impl.MetricsUrlService;
+import dev.urls.service.impl.UrlServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Цена метрик на горячем пути перехода: без метрик, с замером каждого вызова и с выборкой
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+    private static final int SIZE = 1024;
+
+    // 0 — без метрик; 1024 — частота замеров resolveRedirect по умолчанию (metrics.redirect.sampling)
+    @Param({"0", "1", "16", "1024"})
+    private int sampling;
+
+    private UrlServiceImpl urlServiceImpl;
+    private UrlService urlService;
+    private String[] paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        UrlRepository repository = new UrlRepositoryImpl();
+        paths = BenchmarkData.fill(repository, generator, SIZE);
+        MetricsRegistry metrics = sampling > 0 ? new MetricsRegistry() : null;
+        if (metrics != null) repository = new MetricsUrlRepository(repository, metrics, sampling);
+        urlServiceImpl = new UrlServiceImpl(repository, generator, config);
+        urlService = metrics != null ? new MetricsUrlService(urlServiceImpl, metrics, sampling, sampling) : urlServiceImpl;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        urlServiceImpl.close();
+    }
+
+    @Benchmark
+    public RedirectTarget resolveRedirect() {
+        String path = paths[next++ & (SIZE - 1)];
+        return urlService.resolveRedirect(path);
+    }
+}
@@ -0,0 +1,79 @@
+package dev.urls.benchmark;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.OffHeapUrlRepository;
+import dev.urls.repository.impl.ShardedUrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.service.UrlGeneratorService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Операции репозитория при разном числе ссылок: время поиска не должно расти вместе с размером
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RepositoryBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"heap", "offheap", "sharded"})
+    private String layout;
+
+    private UrlRepository repository;
+    private String[] paths;
+    private String[] missingPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AppConfig config = new AppConfig();
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        repository = switch (layout) {
+            case "offheap" -> new OffHeapUrlRepository();
+            case "sharded" -> new ShardedUrlRepository(Runtime.getRuntime().availableProcessors());
+            default -> new UrlRepositoryImpl();
+        };
+        paths = BenchmarkData.fill(repository, generator, size);
+        missingPaths = new String[1024];
+        for (int i = 0; i < missingPaths.length; i++) {
+            missingPaths[i] = "-" + generator.generatePath();
+        }
+    }
+
+    // Писатели сегментов — отдельные потоки, без остановки они переживали бы замер
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (repository instanceof ShardedUrlRepository sharded) sharded.close();
+    }
+
+    @Benchmark
+    public Optional<ShortUrl> findByPathHit() {
+        return repository.findByPath(paths[ThreadLocalRandom.current().nextInt(size)]);
+    }
+
+    @Benchmark
+    public Optional<ShortUrl> findByPathMiss() {
+        return repository.findByPath(missingPaths[ThreadLocalRandom.current().nextInt(missingPaths.length)]);
+    }
+
+    // Пересохранение существующей ссылки, как при изменении лимита или времени жизни
+    @Benchmark
+    public void save() {
+        ShortUrl shortUrl = repository.findByPath(paths[ThreadLocalRandom.current().nextInt(size)]).get();
+        repository.save(shortUrl);
+    }
+
+    @Benchmark
+    public List<ShortUrl> findAllUrlsByUserUuid() {
+        int owners = (size + BenchmarkData.LINKS_PER_OWNER - 1) / BenchmarkData.LINKS_PER_OWNER;
+        return repository.findAllUrlsByUserUuid(BenchmarkData.owner(ThreadLocalRandom.current().nextInt(owners)));
+    }
+}
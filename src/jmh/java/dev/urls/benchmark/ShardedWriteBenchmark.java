@@ -0,0 +1,54 @@
+package dev.urls.benchmark;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.impl.ShardedUrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность записи новых ссылок: одно хранилище против сегментов с отдельными писателями.
+// Число потоков задаётся ключом -t, например -t 16
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ShardedWriteBenchmark {
+    @Param({"heap", "sharded"})
+    private String layout;
+
+    private UrlRepository repository;
+    private LocalDateTime now;
+
+    // Хранилище пересоздаётся на каждой итерации, чтобы его размер не рос от замера к замеру
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = "sharded".equals(layout) ?
+                new ShardedUrlRepository(Runtime.getRuntime().availableProcessors()) : new UrlRepositoryImpl();
+        now = LocalDateTime.now();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (repository instanceof ShardedUrlRepository sharded) sharded.close();
+    }
+
+    @Benchmark
+    public boolean saveIfAbsent() {
+        long id = repository.getNextUrlId();
+        return repository.saveIfAbsent(ShortUrl.builder()
+                .id(id)
+                .originalUrl("https://example.com/articles/" + id)
+                .shortPath(Long.toString(id, 36))
+                .userUuid(BenchmarkData.owner((int) (id % 1000)))
+                .createdAt(now)
+                .expiresAt(now.plusDays(30))
+                .clicksLimit(Integer.MAX_VALUE)
+                .isActive(true)
+                .build());
+    }
+}
@@ -0,0 +1,66 @@
+package dev.urls;
+
+import dev.urls.config.AppConfig;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+import dev.urls.repository.impl.OffHeapUrlRepository;
+import dev.urls.repository.impl.ShardedUrlRepository;
+import dev.urls.repository.impl.UrlRepositoryImpl;
+import dev.urls.repository.impl.UserRepositoryImpl;
+import dev.urls.storage.DataTransfer;
+import dev.urls.storage.StorageEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Выгрузка и загрузка данных хранилища (storage.dir) в файл NDJSON для переноса и резервных копий:
+//   java -cp ... dev.urls.DataTool export links.ndjson
+//   java -cp ... dev.urls.DataTool import links.ndjson
+// Приложение в это время должно быть остановлено.
+public class DataTool {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !("export".equals(args[0]) || "import".equals(args[0]))) {
+            System.out.println("Использование: DataTool export|import <файл>");
+            System.exit(2);
+        }
+        AppConfig config = new AppConfig();
+        if (!config.isStorageEnabled()) {
+            System.out.println("Выгрузка и загрузка работают с хранилищем на диске: включите storage.enabled=true");
+            System.exit(1);
+        }
+        UrlRepository urlRepository = switch (config.getRepositoryLayout()) {
+            case "offheap" -> new OffHeapUrlRepository();
+            case "sharded" -> new ShardedUrlRepository(config.getRepositoryShards());
+            default -> new UrlRepositoryImpl();
+        };
+        UserRepository userRepository = new UserRepositoryImpl();
+        StorageEngine storage = StorageEngine.open(config, urlRepository, userRepository);
+        DataTransfer transfer = new DataTransfer(urlRepository, userRepository, Runtime.getRuntime().availableProcessors());
+        Path file = Path.of(args[1]);
+
+        long start = System.nanoTime();
+        if ("export".equals(args[0])) {
+            long records = transfer.exportTo(file);
+            System.out.printf("Выгружено записей: %d за %d мс%n", records, (System.nanoTime() - start) / 1_000_000);
+            storage.close(false);
+        } else {
+            // id ссылок из файла могут совпасть с id уже существующих, поэтому загрузка только в пустое хранилище
+            if (!isEmpty(urlRepository)) {
+                System.out.println("Хранилище " + config.getStorageDir() + " не пустое, загрузка возможна только в пустое хранилище");
+                storage.close(false);
+                System.exit(1);
+            }
+            long records = transfer.importFrom(file);
+            System.out.printf("Загружено записей: %d за %d мс%n", records, (System.nanoTime() - start) / 1_000_000);
+            // Данные загружены в обход журнала, поэтому сохраняются снимком
+            storage.close(true);
+        }
+    }
+
+    private static boolean isEmpty(UrlRepository urlRepository) {
+        AtomicBoolean found = new AtomicBoolean();
+        urlRepository.forEach(shortUrl -> found.set(true));
+        return !found.get();
+    }
+}
@@ -1,29 +1,174 @@
 package dev.urls;
 
+import dev.urls.cluster.ClusterRouter;
 import dev.urls.config.AppConfig;
+import dev.urls.metrics.MetricsRegistry;
+import dev.urls.replication.ReplicationClient;
+import dev.urls.replication.ReplicationLog;
+import dev.urls.replication.ReplicationServer;
 import dev.urls.repository.UrlRepository;
 import dev.urls.repository.UserRepository;
+import dev.urls.repository.impl.CachingUrlRepository;
+import dev.urls.repository.impl.FilteringUrlRepository;
+import dev.urls.repository.impl.MetricsUrlRepository;
+import dev.urls.repository.impl.OffHeapUrlRepository;
+import dev.urls.repository.impl.ReplicatedUrlRepository;
+import dev.urls.repository.impl.ReplicatedUserRepository;
+import dev.urls.repository.impl.ShardedUrlRepository;
 import dev.urls.repository.impl.UrlRepositoryImpl;
 import dev.urls.repository.impl.UserRepositoryImpl;
 import dev.urls.service.UrlGeneratorService;
+import dev.urls.service.UrlService;
+import dev.urls.service.impl.MetricsUrlService;
 import dev.urls.service.impl.UrlServiceImpl;
 import dev.urls.service.impl.UserServiceImpl;
+import dev.urls.storage.StorageEngine;
+import dev.urls.ui.ClusterApi;
 import dev.urls.ui.ConsoleUI;
+import dev.urls.ui.HttpUI;
 import lombok.val;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.util.function.Supplier;
 
 public class Main {
-    public static void main(String[] args) throws URISyntaxException {
+    public static void main(String[] args) throws URISyntaxException, IOException {
         // Инициализация конфигурации и инстансов
         AppConfig config = new AppConfig();
-        UrlRepository urlRepository = new UrlRepositoryImpl();
+        boolean leader = "leader".equals(config.getReplicationRole());
+        boolean follower = "follower".equals(config.getReplicationRole());
+        if (follower && !config.isHttpEnabled()) {
+            System.out.println("Реплика обслуживает только переходы по ссылкам: включите http.enabled=true");
+            return;
+        }
+        // В кластере короткие пути делятся между узлами, запросы по чужим путям передаются владельцу
+        ClusterRouter cluster = config.getClusterNodes().isEmpty() ? null : new ClusterRouter(config);
+        if (cluster != null && (!config.isHttpEnabled() || follower)) {
+            System.out.println("Узел кластера работает только через HTTP и не может быть репликой: включите http.enabled=true");
+            return;
+        }
+        // Ссылки хранятся объектами в куче (одним хранилищем или сегментами с отдельными писателями)
+        // либо компактными записями вне кучи
+        UrlRepository urlRepository = switch (config.getRepositoryLayout()) {
+            case "offheap" -> new OffHeapUrlRepository();
+            case "sharded" -> new ShardedUrlRepository(config.getRepositoryShards());
+            default -> new UrlRepositoryImpl();
+        };
         UserRepository userRepository = new UserRepositoryImpl();
-        UrlGeneratorService urlGenerator = new UrlGeneratorService(config);
+        MetricsRegistry metrics = config.isMetricsEnabled() ? new MetricsRegistry() : null;
+        if (metrics != null && urlRepository instanceof OffHeapUrlRepository offHeap) {
+            metrics.gauge("offheap.urls.allocatedBytes", offHeap::getUrlArenaAllocatedBytes);
+            metrics.gauge("offheap.urls.liveBytes", offHeap::getUrlArenaLiveBytes);
+            metrics.gauge("offheap.urls.garbageBytes", offHeap::getUrlArenaGarbageBytes);
+        }
+
+        // Восстанавливаем данные с диска и дальше пишем все изменения в журнал
+        StorageEngine storage = config.isStorageEnabled() ?
+                StorageEngine.open(config, urlRepository, userRepository) : null;
+        if (storage != null) {
+            urlRepository = storage.getUrlRepository();
+            userRepository = storage.getUserRepository();
+        }
+        // Фильтр несуществующих путей отсекает поиск случайных путей до обращения к хранилищу
+        if (config.isFilterEnabled()) {
+            FilteringUrlRepository filter = new FilteringUrlRepository(urlRepository,
+                    config.getFilterExpectedSize(), config.getFilterFalsePositiveRate());
+            urlRepository = filter;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(filter.getStats())));
+            if (metrics != null) {
+                metrics.gauge("filter.rejected", filter::getRejectedCount);
+                metrics.gauge("filter.falsePositives", filter::getFalsePositiveCount);
+            }
+        }
+        // Кэш горячих ссылок стоит перед хранилищем, в том числе перед журналом
+        if (config.getCacheSize() > 0) {
+            CachingUrlRepository cache = new CachingUrlRepository(urlRepository, config.getCacheSize());
+            urlRepository = cache;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(cache.getStats())));
+            if (metrics != null) {
+                metrics.gauge("cache.hits", cache::getHitCount);
+                metrics.gauge("cache.misses", cache::getMissCount);
+                metrics.gauge("cache.evictions", cache::getEvictionCount);
+                metrics.gauge("cache.size", cache::getSize);
+            }
+        }
+        // Ведущий узел добавляет каждое изменение в журнал репликации
+        ReplicationLog replicationLog = leader ? new ReplicationLog(config.getReplicationLogCapacity()) : null;
+        if (leader) {
+            urlRepository = new ReplicatedUrlRepository(urlRepository, replicationLog);
+            userRepository = new ReplicatedUserRepository(userRepository, replicationLog);
+        }
+        // Реплика применяет журнал ведущего в обход замеров
+        UrlRepository replicaUrlRepository = urlRepository;
+        // Замеры стоят снаружи всех декораторов и видят то же время, что и сервис
+        if (metrics != null) {
+            urlRepository = new MetricsUrlRepository(urlRepository, metrics, config.getMetricsSampling());
+            metrics.gauge("links.live", urlRepository::count);
+        }
+        UrlGeneratorService urlGenerator = new UrlGeneratorService(config, urlRepository);
+        if (cluster != null) urlGenerator.restrictTo(cluster::isLocal);
 
         // Создаем сервисы
-        val urlService = new UrlServiceImpl(urlRepository, urlGenerator, config);
+        val urlServiceImpl = new UrlServiceImpl(urlRepository, urlGenerator, config);
         val userService = new UserServiceImpl(userRepository);
+        UrlService urlService = urlServiceImpl;
+        if (metrics != null) {
+            urlService = new MetricsUrlService(urlServiceImpl, metrics, config.getMetricsSampling(),
+                    config.getMetricsRedirectSampling());
+            metrics.gauge("links.originals.distinct", urlServiceImpl::getSharedUrlCount);
+            metrics.gauge("links.originals.refs", urlServiceImpl::getSharedUrlReferences);
+            metrics.gauge("links.reused", urlServiceImpl::getReusedCount);
+            metrics.registerMBean();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(metrics.getReport())));
+        }
+
+        // Репликация: ведущий отдаёт журнал и принимает клики реплик, реплика догоняет ведущего и пересылает ему клики
+        Supplier<String> replicationStatus = null;
+        ReplicationClient replicationClient = follower ? new ReplicationClient(config.getReplicationLeader(),
+                config.getReplicationSecret(), replicaUrlRepository, userRepository, urlServiceImpl::invalidate,
+                urlServiceImpl::replaceAdopted) : null;
+        if (leader) {
+            ReplicationServer replicationServer = new ReplicationServer(config.getReplicationBind(),
+                    config.getReplicationPort(), config.getReplicationSecret(), replicationLog,
+                    urlRepository, userRepository, urlServiceImpl::addClicks);
+            replicationServer.start();
+            replicationStatus = replicationServer::getStatus;
+            if (metrics != null) {
+                metrics.gauge("replication.replicas", replicationServer::getReplicaCount);
+                metrics.gauge("replication.lag.records", replicationServer::getMaxLagRecords);
+            }
+        } else if (replicationClient != null) {
+            urlServiceImpl.forwardClicksTo(replicationClient::sendClicks);
+            replicationClient.start();
+            replicationStatus = replicationClient::getStatus;
+            if (metrics != null) {
+                metrics.gauge("replication.lag.records", replicationClient::getLagRecords);
+                metrics.gauge("replication.lag.ms", replicationClient::getLagMillis);
+            }
+        }
+
+        // При завершении сначала дописываем накопленные клики, затем закрываем хранилище
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            urlServiceImpl.close();
+            if (replicationClient != null) replicationClient.close();
+            if (storage == null) return;
+            try {
+                storage.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+
+        // В серверном режиме вместо консоли работает HTTP-интерфейс
+        if (config.isHttpEnabled()) {
+            ClusterApi clusterApi = cluster != null ?
+                    new ClusterApi(cluster, urlRepository, userRepository, urlServiceImpl, config) : null;
+            if (clusterApi != null && metrics != null) metrics.gauge("cluster.forwarded", clusterApi::getForwardedCount);
+            new HttpUI(userService, urlService, config, metrics, replicationStatus, clusterApi).start();
+            return;
+        }
 
         // Создаем и запускаем консольный интерфейс
         ConsoleUI consoleUI = new ConsoleUI(userService, urlService, config);
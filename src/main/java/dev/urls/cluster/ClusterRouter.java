@@ -0,0 +1,159 @@
+package dev.urls.cluster;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.User;
+import dev.urls.storage.NdjsonCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+// Маршрутизация в кластере: какой узел владеет коротким путём и как передать ему запрос.
+// Короткие пути делятся между узлами кольцом согласованного хэширования (cluster.nodes),
+// узел создаёт ссылки только со своими путями, а запросы по чужим путям передаёт владельцу.
+//
+// Пользователи нужны на всех узлах (ссылку пользователя может создать любой узел), поэтому
+// регистрация идёт на узел-владелец имени, который проверяет, что имя свободно, и рассылает пользователя остальным.
+//
+// Узлы доверяют друг другу только по общему секрету cluster.secret: он передаётся в каждом запросе между узлами
+// и в запросах ClusterTool. Без него служебный API отвечает 403, а заголовок FORWARDED_HEADER не учитывается.
+public class ClusterRouter {
+    // Запрос, уже переданный другим узлом, обслуживается на месте: узлы с разными кольцами
+    // во время перебалансировки не гоняют его по кругу
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+
+    private final String self;
+    private final int vnodes;
+    private final boolean proxy;
+    private final byte[] secret;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+    private volatile HashRing ring;
+    // Кольцо, на которое кластер переходит во время перебалансировки, иначе null
+    private volatile HashRing pendingRing;
+
+    public ClusterRouter(AppConfig config) {
+        this.self = config.getClusterSelf();
+        this.vnodes = config.getClusterVnodes();
+        this.proxy = !"redirect".equals(config.getClusterForward());
+        this.ring = HashRing.parse(config.getClusterNodes(), vnodes);
+        if (config.getClusterSecret().isEmpty()) {
+            throw new IllegalArgumentException("Не задан общий секрет узлов кластера (cluster.secret)");
+        }
+        this.secret = config.getClusterSecret().getBytes(StandardCharsets.UTF_8);
+        if (!ring.contains(self)) {
+            throw new IllegalArgumentException("Узла " + self + " (cluster.self) нет в cluster.nodes: " + ring);
+        }
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    // Новый состав кластера; узел, выведенный из кольца, больше не создаёт ссылки и только передаёт запросы
+    public void setRing(String nodes) {
+        HashRing next = HashRing.parse(nodes, vnodes);
+        ring = next;
+        pendingRing = null;
+        System.out.println("Кластер: новый состав узлов " + next + (next.contains(self) ? "" : ", этот узел выведен из кольца"));
+    }
+
+    public HashRing getPendingRing() {
+        return pendingRing;
+    }
+
+    // Начало перебалансировки на кольцо nodes (пустая строка — отмена): ссылки, уходящие другим узлам,
+    // с этого момента не меняются, чтобы последнее копирование перед переключением кольца было окончательным
+    public void setPendingRing(String nodes) {
+        HashRing next = nodes.isBlank() ? null : HashRing.parse(nodes, vnodes);
+        pendingRing = next;
+        System.out.println(next != null ? "Кластер: переход на кольцо " + next + ", переносимые ссылки не изменяются"
+                : "Кластер: перебалансировка отменена");
+    }
+
+    public String ownerOf(String shortPath) {
+        return ring.ownerOf(shortPath);
+    }
+
+    // Путь принадлежит узлу и останется у него после идущей перебалансировки: только такие пути можно занимать
+    public boolean isLocal(String shortPath) {
+        HashRing pending = pendingRing;
+        return ring.ownerOf(shortPath).equals(self) && (pending == null || pending.ownerOf(shortPath).equals(self));
+    }
+
+    // Ссылка этого узла уходит другому узлу в идущей перебалансировке: изменять её нельзя до переключения кольца
+    public boolean isMoving(String shortPath) {
+        HashRing pending = pendingRing;
+        return pending != null && !pending.ownerOf(shortPath).equals(self);
+    }
+
+    // Владелец имени пользователя: на нём проверяется, что имя свободно
+    public String ownerOfUsername(String username) {
+        return ring.ownerOf("@" + username);
+    }
+
+    public boolean isMember() {
+        return ring.contains(self);
+    }
+
+    // true — запрос передаётся владельцу через этот узел, false — клиент получает 307 на владельца
+    public boolean isProxy() {
+        return proxy;
+    }
+
+    // Запрос пришёл от узла кластера или ClusterTool. Сравнение за постоянное время, чтобы секрет нельзя было подобрать по задержке
+    public boolean isTrusted(String presentedSecret) {
+        return presentedSecret != null && MessageDigest.isEqual(secret, presentedSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Отправляет запрос узлу node; uri — путь с запросом, например "/abc123" или "/api/urls?user=..."
+    public HttpResponse<InputStream> send(String node, String method, String uri, HttpRequest.BodyPublisher body)
+            throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + node + uri))
+                .method(method, body)
+                .header(FORWARDED_HEADER, self)
+                .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запрос к узлу " + node + " прерван", e);
+        }
+    }
+
+    // Рассылает нового пользователя остальным узлам. Недоступный узел получит его при перебалансировке
+    public void broadcastUser(User user) {
+        StringBuilder line = new StringBuilder();
+        NdjsonCodec.writeUser(line, user);
+        for (String node : ring.getNodes()) {
+            if (node.equals(self)) continue;
+            try {
+                HttpResponse<InputStream> response = send(node, "PUT", "/api/cluster/users",
+                        HttpRequest.BodyPublishers.ofString(line.toString()));
+                try (InputStream body = response.body()) {
+                    body.transferTo(OutputStream.nullOutputStream());
+                }
+                if (response.statusCode() != 200) throw new IOException("ответ " + response.statusCode());
+            } catch (IOException e) {
+                System.out.println("Кластер: пользователь " + user.getUsername() + " не передан узлу " + node + ": " + e.getMessage());
+            }
+        }
+    }
+}
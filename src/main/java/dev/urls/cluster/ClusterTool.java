@@ -0,0 +1,361 @@
+package dev.urls.cluster;
+
+import dev.urls.config.AppConfig;
+import dev.urls.service.UrlGeneratorService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+// Инструменты кластера:
+//   java -cp ... dev.urls.cluster.ClusterTool ring <узлы> <новые узлы> [путей]
+//       доли узлов и доля путей, сменивших владельца, на путях из UrlGeneratorService (без запуска узлов)
+//   java -cp ... dev.urls.cluster.ClusterTool rebalance <узлы> <новые узлы>
+//       перенос ссылок работающего кластера на новый состав узлов
+//   java -cp ... dev.urls.cluster.ClusterTool harness [узлов] [ссылок]
+//       запускает узлы отдельными процессами на localhost, заполняет их, добавляет и выводит узел
+// Узлы задаются как в cluster.nodes: "host:port,host:port". cluster.vnodes должен совпадать на всех узлах,
+// для rebalance нужен тот же cluster.secret, что у узлов (например -Dcluster.secret=...).
+public class ClusterTool {
+    private static final int TRANSFER_BATCH = 1000;
+    private static final int HARNESS_BASE_PORT = 18080;
+    private static final int HARNESS_SAMPLE = 2000;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final AppConfig config = new AppConfig();
+    private String secret = config.getClusterSecret();
+
+    public static void main(String[] args) throws Exception {
+        ClusterTool tool = new ClusterTool();
+        String command = args.length > 0 ? args[0] : "";
+        switch (command) {
+            case "ring" -> {
+                if (args.length < 3) usage();
+                tool.simulate(HashRing.parseNodes(args[1]), HashRing.parseNodes(args[2]),
+                        args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000);
+            }
+            case "rebalance" -> {
+                if (args.length != 3) usage();
+                tool.rebalance(HashRing.parseNodes(args[1]), HashRing.parseNodes(args[2]));
+            }
+            case "harness" -> tool.harness(args.length > 1 ? Integer.parseInt(args[1]) : 3,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 100_000);
+            default -> usage();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Использование: ClusterTool ring <узлы> <новые узлы> [путей]");
+        System.out.println("               ClusterTool rebalance <узлы> <новые узлы>");
+        System.out.println("               ClusterTool harness [узлов] [ссылок]");
+        System.exit(2);
+    }
+
+    // Раскладывает случайные пути по двум кольцам и сравнивает с идеалом
+    private void simulate(List<String> nodes, List<String> newNodes, int paths) {
+        HashRing ring = new HashRing(nodes, config.getClusterVnodes());
+        HashRing next = new HashRing(newNodes, config.getClusterVnodes());
+        UrlGeneratorService generator = new UrlGeneratorService(config);
+        Map<String, Integer> shares = new TreeMap<>();
+        Map<String, Integer> nextShares = new TreeMap<>();
+        int moved = 0;
+        for (int i = 0; i < paths; i++) {
+            String path = generator.generatePath();
+            String owner = ring.ownerOf(path);
+            String nextOwner = next.ownerOf(path);
+            shares.merge(owner, 1, Integer::sum);
+            nextShares.merge(nextOwner, 1, Integer::sum);
+            if (!owner.equals(nextOwner)) moved++;
+        }
+        printShares("Было", shares, paths, nodes.size());
+        printShares("Стало", nextShares, paths, newNodes.size());
+        System.out.printf("Сменили владельца: %.2f%% путей, ожидается %.2f%%%n",
+                100.0 * moved / paths, 100.0 * expectedMoved(nodes, newNodes));
+    }
+
+    private void printShares(String title, Map<String, ? extends Number> shares, long total, int nodes) {
+        long max = shares.values().stream().mapToLong(Number::longValue).max().orElse(0);
+        System.out.printf("%s (%d узлов, виртуальных узлов на узел %d): самый загруженный узел держит %.2f среднего%n",
+                title, nodes, config.getClusterVnodes(), (double) max * nodes / total);
+        shares.forEach((node, count) -> System.out.printf("  %-22s %10d  %5.2f%%%n", node, count.longValue(), 100.0 * count.longValue() / total));
+    }
+
+    // Доля ключей, которые при смене состава должны уйти с кольца nodes: узлы, которых не стало,
+    // отдают всё, оставшиеся отдают новым узлам их долю
+    private static double expectedMoved(List<String> nodes, List<String> newNodes) {
+        long kept = nodes.stream().filter(newNodes::contains).count();
+        long added = newNodes.stream().filter(node -> !nodes.contains(node)).count();
+        double removedShare = 1.0 - (double) kept / nodes.size();
+        return removedShare + (1.0 - removedShare) * added / newNodes.size();
+    }
+
+    // Перенос ссылок на новый состав кольца, пока кластер обслуживает запросы:
+    //   1. новые узлы получают всех пользователей;
+    //   2. ссылки, у которых сменится владелец, копируются новым владельцам (старые узлы ещё отвечают по ним);
+    //   3. узлы узнают будущее кольцо: переносимые ссылки больше не изменяются и не создаются (ответ 503);
+    //   4. последнее полное копирование: изменения переносимых ссылок между шагами 2 и 3;
+    //   5. все узлы переходят на новое кольцо, с этого момента запросы идут новым владельцам;
+    //   6. новым владельцам передаются только клики, пришедшие на старые узлы между шагами 4 и 5.
+    //      Ссылки на новых владельцах уже могли изменить или удалить, поэтому полная копия их бы откатила;
+    //   7. старые узлы удаляют ссылки, которые им больше не принадлежат.
+    // Выведенные узлы после шага 5 пустые и только передают запросы, их можно останавливать
+    public void rebalance(List<String> nodes, List<String> newNodes) throws IOException {
+        long start = System.nanoTime();
+        // Неверный список узлов должен обнаружиться до начала переноса
+        new HashRing(newNodes, config.getClusterVnodes());
+        List<String> added = newNodes.stream().filter(node -> !nodes.contains(node)).toList();
+        List<String> all = new ArrayList<>(nodes);
+        added.forEach(all::add);
+
+        if (!added.isEmpty()) {
+            String users = request(nodes.get(0), "GET", "/api/cluster/users", HttpRequest.BodyPublishers.noBody());
+            for (String node : added) {
+                String saved = request(node, "PUT", "/api/cluster/users", HttpRequest.BodyPublishers.ofString(users));
+                System.out.println("Пользователей передано узлу " + node + ": " + saved);
+            }
+        }
+        String target = String.join(",", newNodes);
+        long copied = copyLinks(nodes, newNodes, "?nodes=" + target, "");
+        System.out.println("Ссылок скопировано новым владельцам: " + copied);
+        try {
+            for (String node : all) request(node, "PUT", "/api/cluster/ring/pending", HttpRequest.BodyPublishers.ofString(target));
+            long recopied = copyLinks(nodes, newNodes, "?nodes=" + target, "");
+            System.out.println("Переносимые ссылки заморожены, скопировано повторно: " + recopied);
+        } catch (IOException e) {
+            // Без переключения кольца заморозка не снимется сама
+            for (String node : all) {
+                try {
+                    request(node, "PUT", "/api/cluster/ring/pending", HttpRequest.BodyPublishers.noBody());
+                } catch (IOException cancel) {
+                    System.out.println("Не удалось отменить перебалансировку на узле " + node + ": " + cancel.getMessage());
+                }
+            }
+            throw e;
+        }
+        for (String node : all) request(node, "PUT", "/api/cluster/ring", HttpRequest.BodyPublishers.ofString(target));
+        System.out.println("Все узлы перешли на кольцо " + target);
+        long merged = copyLinks(nodes, newNodes, "", "?clicks=only");
+        System.out.println("Ссылок с досчитанными кликами: " + merged);
+        long deleted = 0;
+        for (String node : nodes) {
+            deleted += Long.parseLong(request(node, "DELETE", "/api/cluster/links", HttpRequest.BodyPublishers.noBody()).strip());
+        }
+        System.out.printf("Ссылок удалено со старых владельцев: %d, перебалансировка заняла %d мс%n",
+                deleted, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Каждый узел отдаёт ссылки, которые по новому кольцу ему не принадлежат; они пачками отправляются владельцам
+    // importQuery — параметры приёма на владельце (?clicks=only — только клики)
+    private long copyLinks(List<String> nodes, List<String> newNodes, String query, String importQuery) throws IOException {
+        HashRing next = new HashRing(newNodes, config.getClusterVnodes());
+        long copied = 0;
+        for (String source : nodes) {
+            Map<String, StringBuilder> batches = new HashMap<>();
+            Map<String, Integer> sizes = new HashMap<>();
+            HttpResponse<InputStream> response = send(source, "GET", "/api/cluster/links" + query, HttpRequest.BodyPublishers.noBody());
+            check(source, response);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8), 1 << 16)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    String owner = next.ownerOf(pathOf(line));
+                    batches.computeIfAbsent(owner, node -> new StringBuilder()).append(line).append('\n');
+                    if (sizes.merge(owner, 1, Integer::sum) == TRANSFER_BATCH) {
+                        copied += flush(owner, batches, sizes, importQuery);
+                    }
+                }
+            }
+            for (String owner : new ArrayList<>(batches.keySet())) copied += flush(owner, batches, sizes, importQuery);
+        }
+        return copied;
+    }
+
+    private long flush(String owner, Map<String, StringBuilder> batches, Map<String, Integer> sizes, String importQuery)
+            throws IOException {
+        StringBuilder batch = batches.remove(owner);
+        sizes.remove(owner);
+        if (batch == null || batch.isEmpty()) return 0;
+        return Long.parseLong(request(owner, "POST", "/api/cluster/links" + importQuery, HttpRequest.BodyPublishers.ofString(batch.toString())).strip());
+    }
+
+    // Путь из строки NDJSON без полного разбора: поле "path" пишет NdjsonCodec, короткий путь не содержит кавычек
+    private static String pathOf(String line) {
+        int start = line.indexOf("\"path\":\"") + 8;
+        return line.substring(start, line.indexOf('"', start));
+    }
+
+    // Стенд на localhost: узлы — отдельные JVM с тем же classpath, логи пишутся во временный каталог
+    private void harness(int nodeCount, int links) throws Exception {
+        if (secret.isEmpty()) secret = UUID.randomUUID().toString();
+        Path logs = Files.createTempDirectory("cluster-harness");
+        Map<String, Process> processes = new LinkedHashMap<>();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> processes.values().forEach(Process::destroy)));
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) nodes.add("localhost:" + (HARNESS_BASE_PORT + i));
+        System.out.println("Логи узлов: " + logs);
+        for (String node : nodes) processes.put(node, startNode(node, nodes, logs));
+        for (String node : nodes) awaitNode(node);
+
+        String user = request(nodes.get(0), "POST", "/api/users?username=harness", HttpRequest.BodyPublishers.noBody()).strip();
+        // Запросы на создание распределяются по узлам поровну, как балансировщиком нагрузки
+        Map<String, String> created = new HashMap<>(links * 2);
+        long start = System.nanoTime();
+        int perRequest = 1000;
+        for (int from = 0, request = 0; from < links; from += perRequest, request++) {
+            StringBuilder body = new StringBuilder();
+            for (int i = from; i < Math.min(links, from + perRequest); i++) body.append("https://example.com/page/").append(i).append('\n');
+            String node = nodes.get(request % nodes.size());
+            for (String line : request(node, "POST", "/api/batch/urls?user=" + user, HttpRequest.BodyPublishers.ofString(body.toString())).split("\n")) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) created.put(line.substring(line.lastIndexOf('/', tab) + 1, tab), line.substring(tab + 1));
+            }
+        }
+        System.out.printf("Создано ссылок: %d за %d мс%n", created.size(), (System.nanoTime() - start) / 1_000_000);
+        report(nodes, created.size());
+        verify(nodes, created);
+
+        List<String> grown = new ArrayList<>(nodes);
+        String extra = "localhost:" + (HARNESS_BASE_PORT + nodeCount);
+        grown.add(extra);
+        processes.put(extra, startNode(extra, grown, logs));
+        awaitNode(extra);
+        System.out.printf("%nДобавляем узел %s, ожидается перенос около %.1f%% ссылок%n", extra, 100.0 * expectedMoved(nodes, grown));
+        rebalance(nodes, grown);
+        report(grown, created.size());
+        verify(grown, created);
+
+        List<String> shrunk = new ArrayList<>(grown);
+        String removed = shrunk.remove(0);
+        System.out.printf("%nВыводим узел %s, ожидается перенос около %.1f%% ссылок%n", removed, 100.0 * expectedMoved(grown, shrunk));
+        rebalance(grown, shrunk);
+        report(shrunk, created.size());
+        processes.remove(removed).destroy();
+        verify(shrunk, created);
+        processes.values().forEach(Process::destroy);
+    }
+
+    private Process startNode(String node, List<String> nodes, Path logs) throws IOException {
+        String port = node.substring(node.lastIndexOf(':') + 1);
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        // Лимит кликов поднят, чтобы проверочные переходы не деактивировали ссылки
+        return new ProcessBuilder(java.toString(), "-Xmx256m",
+                "-cp", System.getProperty("java.class.path"),
+                "-Dhttp.enabled=true", "-Dhttp.port=" + port,
+                "-Dcluster.nodes=" + String.join(",", nodes), "-Dcluster.self=" + node,
+                "-Dcluster.vnodes=" + config.getClusterVnodes(), "-Dcluster.secret=" + secret,
+                "-Durl.default.clicks.limit=1000000",
+                "dev.urls.Main")
+                .redirectErrorStream(true)
+                .redirectOutput(logs.resolve("node-" + port + ".log").toFile())
+                .start();
+    }
+
+    private void awaitNode(String node) throws InterruptedException {
+        for (int attempt = 0; attempt < 300; attempt++) {
+            try {
+                request(node, "GET", "/api/cluster/ring", HttpRequest.BodyPublishers.noBody());
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Узел " + node + " не запустился");
+    }
+
+    // Ссылки по узлам: ёмкость кластера ограничена самым загруженным узлом
+    private void report(List<String> nodes, long total) throws IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String node : nodes) {
+            Map<String, String> status = new HashMap<>();
+            for (String line : request(node, "GET", "/api/cluster", HttpRequest.BodyPublishers.noBody()).split("\n")) {
+                int eq = line.indexOf('=');
+                if (eq > 0) status.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+            counts.put(node, Long.parseLong(status.get("links")));
+            if (!"0".equals(status.get("foreign"))) System.out.println("  на узле " + node + " остались чужие ссылки: " + status.get("foreign"));
+        }
+        printShares("Ссылки по узлам", counts, total, nodes.size());
+        long max = counts.values().stream().mapToLong(Long::longValue).max().orElse(1);
+        System.out.printf("  при одинаковой памяти узлов кластер вмещает %.2f объёма одного узла%n", (double) total / max);
+        long stored = counts.values().stream().mapToLong(Long::longValue).sum();
+        if (stored != total) System.out.println("  всего на узлах " + stored + " ссылок вместо " + total);
+    }
+
+    // Переходы по выборке ссылок через случайные узлы: каждый должен вернуть 302 на исходный адрес.
+    // Заодно сравнивается задержка при попадании на владельца и при передаче запроса владельцу
+    private void verify(List<String> nodes, Map<String, String> created) throws IOException {
+        HashRing ring = new HashRing(nodes, config.getClusterVnodes());
+        List<String> paths = new ArrayList<>(created.keySet());
+        Collections.shuffle(paths, new Random(42));
+        Random random = new Random(7);
+        int failed = 0;
+        long localNanos = 0;
+        long forwardedNanos = 0;
+        int local = 0;
+        for (String path : paths.subList(0, Math.min(HARNESS_SAMPLE, paths.size()))) {
+            String node = nodes.get(random.nextInt(nodes.size()));
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = send(node, "GET", "/" + path, HttpRequest.BodyPublishers.noBody());
+            response.body().close();
+            long elapsed = System.nanoTime() - start;
+            if (ring.ownerOf(path).equals(node)) {
+                localNanos += elapsed;
+                local++;
+            } else {
+                forwardedNanos += elapsed;
+            }
+            if (response.statusCode() != 302 || !created.get(path).equals(response.headers().firstValue("Location").orElse(null))) {
+                failed++;
+            }
+        }
+        int sample = Math.min(HARNESS_SAMPLE, paths.size());
+        System.out.printf("Проверено переходов: %d, ошибок: %d; задержка на владельце %.0f мкс, через другой узел %.0f мкс%n",
+                sample, failed, local > 0 ? localNanos / 1000.0 / local : 0.0,
+                sample > local ? forwardedNanos / 1000.0 / (sample - local) : 0.0);
+    }
+
+    private HttpResponse<InputStream> send(String node, String method, String uri, HttpRequest.BodyPublisher body)
+            throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + node + uri))
+                .method(method, body)
+                .header(ClusterRouter.SECRET_HEADER, secret)
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запрос к узлу " + node + " прерван", e);
+        }
+    }
+
+    private String request(String node, String method, String uri, HttpRequest.BodyPublisher body) throws IOException {
+        HttpResponse<InputStream> response = send(node, method, uri, body);
+        check(node, response);
+        try (InputStream in = response.body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void check(String node, HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() / 100 == 2) return;
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        throw new IOException("Узел " + node + " ответил " + response.statusCode() + ": " + body);
+    }
+}
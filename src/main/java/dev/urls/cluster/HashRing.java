@@ -0,0 +1,99 @@
+package dev.urls.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+// Кольцо согласованного хэширования: каждый узел ставит на кольцо vnodes точек,
+// ключ принадлежит узлу первой точки по часовой стрелке от хэша ключа.
+// При добавлении или удалении узла меняют владельца только ключи между его точками и предыдущими,
+// то есть в среднем 1/N ключей. Виртуальные точки выравнивают доли узлов.
+// Неизменяемо: при смене состава узлов строится новое кольцо.
+public final class HashRing {
+    private final List<String> nodes;
+    private final int vnodes;
+    // Точки кольца по возрастанию и их узлы
+    private final long[] points;
+    private final String[] owners;
+
+    public HashRing(List<String> nodes, int vnodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("Кольцо без узлов");
+        if (vnodes < 1) throw new IllegalArgumentException("Число виртуальных узлов должно быть положительным: " + vnodes);
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("Узлы повторяются: " + nodes);
+        }
+        this.nodes = List.copyOf(nodes);
+        this.vnodes = vnodes;
+        long[][] sorted = new long[nodes.size() * vnodes][];
+        int n = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int i = 0; i < vnodes; i++) sorted[n++] = new long[]{hash(nodes.get(node) + "#" + i), node};
+        }
+        // Совпавшие точки разных узлов упорядочиваются по номеру узла, чтобы кольцо не зависело от порядка сортировки
+        Arrays.sort(sorted, (a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.points = new long[sorted.length];
+        this.owners = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            points[i] = sorted[i][0];
+            owners[i] = nodes.get((int) sorted[i][1]);
+        }
+    }
+
+    // Разбирает список узлов через запятую: "host1:8080,host2:8080"
+    public static HashRing parse(String nodes, int vnodes) {
+        return new HashRing(parseNodes(nodes), vnodes);
+    }
+
+    public static List<String> parseNodes(String nodes) {
+        return Arrays.stream(nodes.split(","))
+                .map(String::strip)
+                .filter(node -> !node.isEmpty())
+                .toList();
+    }
+
+    public String ownerOf(String key) {
+        long hash = hash(key);
+        int low = 0;
+        int high = points.length;
+        // Первая точка не меньше хэша (сравнение без знака); после последней точки — снова первая
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[mid], hash) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public int getVnodes() {
+        return vnodes;
+    }
+
+    public boolean contains(String node) {
+        return nodes.contains(node);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", nodes);
+    }
+
+    // FNV-1a по байтам UTF-8 с финальным перемешиванием MurmurHash3: короткие похожие ключи
+    // (пути одинаковой длины, "host:port#i") расходятся по всему кольцу
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -18,11 +18,93 @@ public class AppConfig {
     @Getter
     private int shortUrlLength;
     @Getter
+    private String repositoryLayout;
+    @Getter
+    private int repositoryShards;
+    @Getter
+    private int cacheSize;
+    @Getter
+    private boolean filterEnabled;
+    @Getter
+    private long filterExpectedSize;
+    @Getter
+    private double filterFalsePositiveRate;
+    @Getter
+    private String generatorMode;
+    @Getter
+    private long generatorKey;
+    @Getter
+    private int generatorPoolSize;
+    @Getter
+    private int generatorPoolLowWatermark;
+    @Getter
     private int defaultLifetimeHours;
     @Getter
     private int defaultLifetimeMin;
     @Getter
     private int defaultClicksLimit;
+    @Getter
+    private long expirySweepIntervalMs;
+    @Getter
+    private boolean originalsShared;
+    @Getter
+    private boolean dedupPerUser;
+    @Getter
+    private int urlBatchSize;
+    @Getter
+    private int clicksQueueCapacity;
+    @Getter
+    private String clicksOverflowPolicy;
+    @Getter
+    private long clicksFlushIntervalMs;
+    @Getter
+    private int clicksBatchSize;
+    @Getter
+    private boolean storageEnabled;
+    @Getter
+    private String storageDir;
+    @Getter
+    private boolean storageWalSync;
+    @Getter
+    private int storageWalBatchSize;
+    @Getter
+    private long storageSnapshotThreshold;
+    @Getter
+    private boolean storageSnapshotOnShutdown;
+    @Getter
+    private String replicationRole;
+    @Getter
+    private String replicationBind;
+    @Getter
+    private int replicationPort;
+    @Getter
+    private String replicationSecret;
+    @Getter
+    private String replicationLeader;
+    @Getter
+    private int replicationLogCapacity;
+    @Getter
+    private String clusterNodes;
+    @Getter
+    private String clusterSelf;
+    @Getter
+    private int clusterVnodes;
+    @Getter
+    private String clusterForward;
+    @Getter
+    private String clusterSecret;
+    @Getter
+    private boolean metricsEnabled;
+    @Getter
+    private int metricsSampling;
+    @Getter
+    private int metricsRedirectSampling;
+    @Getter
+    private boolean httpEnabled;
+    @Getter
+    private int httpPort;
+    @Getter
+    private int httpBacklog;
 
     public AppConfig() {
         properties = new Properties();
@@ -35,13 +117,62 @@ public class AppConfig {
         @Cleanup @NonNull
         InputStream input = getClass().getClassLoader().getResourceAsStream(CONFIG_FILE);
         properties.load(input);
+        // Системные свойства (-Dключ=значение) переопределяют файл, например для запуска нескольких экземпляров
+        for (String key : properties.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) properties.setProperty(key, override);
+        }
     }
 
     private void initializeFields() {
         domain = properties.getProperty("url.domain");
         shortUrlLength = Integer.parseInt(properties.getProperty("url.length"));
+        repositoryLayout = properties.getProperty("url.repository");
+        // 0 — по числу ядер
+        repositoryShards = Integer.parseInt(properties.getProperty("url.repository.shards"));
+        if (repositoryShards <= 0) repositoryShards = Runtime.getRuntime().availableProcessors();
+        cacheSize = Integer.parseInt(properties.getProperty("url.cache.size"));
+        filterEnabled = Boolean.parseBoolean(properties.getProperty("url.filter.enabled"));
+        filterExpectedSize = Long.parseLong(properties.getProperty("url.filter.expected.size"));
+        filterFalsePositiveRate = Double.parseDouble(properties.getProperty("url.filter.fpp"));
+        generatorMode = properties.getProperty("url.generator");
+        generatorKey = Long.parseLong(properties.getProperty("url.generator.key"));
+        generatorPoolSize = Integer.parseInt(properties.getProperty("url.generator.pool.size"));
+        generatorPoolLowWatermark = Integer.parseInt(properties.getProperty("url.generator.pool.low.watermark"));
         defaultLifetimeHours = Integer.parseInt(properties.getProperty("url.default.lifetime.hours"));
         defaultLifetimeMin = Integer.parseInt(properties.getProperty("url.default.lifetime.min"));
         defaultClicksLimit = Integer.parseInt(properties.getProperty("url.default.clicks.limit"));
+        expirySweepIntervalMs = Long.parseLong(properties.getProperty("url.expiry.sweep.interval.ms"));
+        originalsShared = Boolean.parseBoolean(properties.getProperty("url.originals.shared"));
+        dedupPerUser = Boolean.parseBoolean(properties.getProperty("url.dedup.per.user"));
+        urlBatchSize = Integer.parseInt(properties.getProperty("url.batch.size"));
+        clicksQueueCapacity = Integer.parseInt(properties.getProperty("clicks.queue.capacity"));
+        clicksOverflowPolicy = properties.getProperty("clicks.overflow");
+        clicksFlushIntervalMs = Long.parseLong(properties.getProperty("clicks.flush.interval.ms"));
+        clicksBatchSize = Integer.parseInt(properties.getProperty("clicks.batch.size"));
+        storageEnabled = Boolean.parseBoolean(properties.getProperty("storage.enabled"));
+        storageDir = properties.getProperty("storage.dir");
+        storageWalSync = Boolean.parseBoolean(properties.getProperty("storage.wal.sync"));
+        storageWalBatchSize = Integer.parseInt(properties.getProperty("storage.wal.batch.size"));
+        storageSnapshotThreshold = Long.parseLong(properties.getProperty("storage.snapshot.threshold"));
+        storageSnapshotOnShutdown = Boolean.parseBoolean(properties.getProperty("storage.snapshot.on.shutdown"));
+        replicationRole = properties.getProperty("replication.role");
+        replicationBind = properties.getProperty("replication.bind").strip();
+        replicationPort = Integer.parseInt(properties.getProperty("replication.port"));
+        replicationSecret = properties.getProperty("replication.secret").strip();
+        replicationLeader = properties.getProperty("replication.leader");
+        replicationLogCapacity = Integer.parseInt(properties.getProperty("replication.log.capacity"));
+        // Пустой список узлов — кластер выключен
+        clusterNodes = properties.getProperty("cluster.nodes").strip();
+        clusterSelf = properties.getProperty("cluster.self").strip();
+        clusterVnodes = Integer.parseInt(properties.getProperty("cluster.vnodes"));
+        clusterForward = properties.getProperty("cluster.forward");
+        clusterSecret = properties.getProperty("cluster.secret").strip();
+        metricsEnabled = Boolean.parseBoolean(properties.getProperty("metrics.enabled"));
+        metricsSampling = Integer.parseInt(properties.getProperty("metrics.sampling"));
+        metricsRedirectSampling = Integer.parseInt(properties.getProperty("metrics.redirect.sampling"));
+        httpEnabled = Boolean.parseBoolean(properties.getProperty("http.enabled"));
+        httpPort = Integer.parseInt(properties.getProperty("http.port"));
+        httpBacklog = Integer.parseInt(properties.getProperty("http.backlog"));
     }
 }
\ No newline at end of file
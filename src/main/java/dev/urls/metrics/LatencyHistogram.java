@@ -0,0 +1,90 @@
+package dev.urls.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма задержек в наносекундах в духе HdrHistogram: значения до 64 хранятся точно, дальше
+// в каждом интервале [2^k, 2^(k+1)) по 32 равных ячейки, то есть погрешность не больше 1/32 (~3%)
+// при фиксированном размере. Счётчики разбиты на полосы по потокам, чтобы параллельная запись
+// не конкурировала за одни и те же линии кэша.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF = SUB_COUNT / 2;
+    // Старший учитываемый разряд: 2^42 нс — больше часа, всё дольше попадает в последнюю ячейку
+    private static final int MAX_EXPONENT = 42;
+    private static final int BUCKETS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * HALF;
+
+    private final AtomicLongArray counts;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.stripeMask = stripes - 1;
+    }
+
+    public void record(long nanos) {
+        int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+        counts.getAndIncrement(stripe * BUCKETS + bucket(nanos));
+    }
+
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        for (int i = 0; i < counts.length(); i++) {
+            merged[i % BUCKETS] += counts.get(i);
+        }
+        return new Snapshot(merged);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_COUNT) return (int) Math.max(0, value);
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT && value >= 2L << MAX_EXPONENT) return BUCKETS - 1;
+        int mantissa = (int) (value >>> (exponent - SUB_BITS + 1));
+        return SUB_COUNT + (exponent - SUB_BITS) * HALF + (mantissa - HALF);
+    }
+
+    // Наибольшее значение, попадающее в ячейку
+    static long highestValue(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int offset = bucket - SUB_COUNT;
+        int shift = offset / HALF + 1;
+        long mantissa = HALF + offset % HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long count : counts) sum += count;
+            this.total = sum;
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        // Значение, не меньше которого quantile (от 0 до 1) всех измерений; 0, если измерений нет
+        public long valueAt(double quantile) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return highestValue(i);
+            }
+            return highestValue(counts.length - 1);
+        }
+
+        public long max() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) return highestValue(i);
+            }
+            return 0;
+        }
+    }
+}
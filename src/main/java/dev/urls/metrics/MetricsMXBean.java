@@ -0,0 +1,18 @@
+package dev.urls.metrics;
+
+import java.util.Map;
+
+// Метрики сервиса в JMX (dev.urls:type=Metrics): счётчики операций и показатели, задержки в наносекундах
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getLatencyP50();
+
+    Map<String, Long> getLatencyP99();
+
+    Map<String, Long> getLatencyP999();
+
+    Map<String, Long> getLatencyMax();
+
+    String getReport();
+}
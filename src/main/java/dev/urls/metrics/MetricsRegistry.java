@@ -0,0 +1,142 @@
+package dev.urls.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// Реестр метрик: операции (число вызовов, промахов и гистограмма задержек) и показатели,
+// которые считаются в момент чтения (число ссылок, статистика кэша и т.п.).
+// Доступен через JMX и текстовым отчётом.
+public class MetricsRegistry implements MetricsMXBean {
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final long startedAt = System.nanoTime();
+
+    // sampling — задержка измеряется у одного из sampling вызовов (степень двойки), считаются все вызовы
+    public Operation operation(String name, int sampling) {
+        return operations.computeIfAbsent(name, key -> new Operation(sampling));
+    }
+
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("dev.urls:type=Metrics"));
+        } catch (JMException e) {
+            System.out.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        operations.forEach((name, operation) -> {
+            counters.put(name + ".calls", operation.getCalls());
+            if (operation.getMisses() > 0) counters.put(name + ".misses", operation.getMisses());
+        });
+        gauges.forEach((name, value) -> counters.put(name, value.getAsLong()));
+        return counters;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50() {
+        return latencies(snapshot -> snapshot.valueAt(0.5));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99() {
+        return latencies(snapshot -> snapshot.valueAt(0.99));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP999() {
+        return latencies(snapshot -> snapshot.valueAt(0.999));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMax() {
+        return latencies(LatencyHistogram.Snapshot::max);
+    }
+
+    @Override
+    public String getReport() {
+        double uptimeSeconds = Math.max(1e-9, (System.nanoTime() - startedAt) / 1e9);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-28s %12s %10s %8s %10s %10s %10s %10s %10s%n",
+                "операция", "вызовов", "в сек.", "промахи", "p50 мкс", "p90 мкс", "p99 мкс", "p99.9 мкс", "max мкс"));
+        new TreeMap<>(operations).forEach((name, operation) -> {
+            LatencyHistogram.Snapshot snapshot = operation.histogram.snapshot();
+            long calls = operation.getCalls();
+            report.append(String.format("%-28s %12d %10.1f %7.1f%% %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    name, calls, calls / uptimeSeconds,
+                    calls > 0 ? 100.0 * operation.getMisses() / calls : 0.0,
+                    micros(snapshot.valueAt(0.5)), micros(snapshot.valueAt(0.9)), micros(snapshot.valueAt(0.99)),
+                    micros(snapshot.valueAt(0.999)), micros(snapshot.max())));
+        });
+        new TreeMap<>(gauges).forEach((name, value) -> report.append(String.format("%-28s %12d%n", name, value.getAsLong())));
+        return report.toString();
+    }
+
+    private Map<String, Long> latencies(Function<LatencyHistogram.Snapshot, Long> statistic) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        new TreeMap<>(operations).forEach((name, operation) -> result.put(name, statistic.apply(operation.histogram.snapshot())));
+        return result;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    // Замер одной операции:
+    //   long start = operation.start();
+    //   ...
+    //   operation.stop(start);
+    public static final class Operation {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final int sampleMask;
+
+        private Operation(int sampling) {
+            if (Integer.bitCount(sampling) != 1) {
+                throw new IllegalArgumentException("Частота замеров должна быть степенью двойки: " + sampling);
+            }
+            this.sampleMask = sampling - 1;
+        }
+
+        // 0, если этот вызов не замеряется
+        public long start() {
+            if (sampleMask != 0 && (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return 0;
+            return System.nanoTime();
+        }
+
+        public void stop(long start) {
+            calls.increment();
+            if (start != 0) histogram.record(System.nanoTime() - start);
+        }
+
+        // hit — операция нашла то, что искала (ссылку, пользователя)
+        public void stop(long start, boolean hit) {
+            stop(start);
+            if (!hit) misses.increment();
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+    }
+}
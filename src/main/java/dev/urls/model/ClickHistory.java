@@ -0,0 +1,67 @@
+package dev.urls.model;
+
+// Клики по ссылке за последние 60 минут, 24 часа и 30 суток. Для каждого уровня хранится кольцо
+// счётчиков фиксированного размера, поэтому память на ссылку не зависит от числа переходов.
+// Клик попадает сразу во все три кольца (минута, час и сутки, в которые он пришёлся),
+// а устаревшие ячейки обнуляются при переходе кольца к новому интервалу.
+// Записывает только поток агрегации кликов, читать можно из любого потока.
+public class ClickHistory {
+    public static final int MINUTES = 60;
+    public static final int HOURS = 24;
+    public static final int DAYS = 30;
+
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    // Кольца уровней подряд: минуты, часы, сутки
+    private static final int HOURS_OFFSET = MINUTES;
+    private static final int DAYS_OFFSET = MINUTES + HOURS;
+
+    private final int[] buckets = new int[MINUTES + HOURS + DAYS];
+    // Номер последнего записанного интервала каждого уровня от начала эпохи
+    private long lastMinute = Long.MIN_VALUE;
+    private long lastHour = Long.MIN_VALUE;
+    private long lastDay = Long.MIN_VALUE;
+
+    public synchronized void record(int clicks, long nowMillis) {
+        lastMinute = add(0, MINUTES, lastMinute, nowMillis / MINUTE_MILLIS, clicks);
+        lastHour = add(HOURS_OFFSET, HOURS, lastHour, nowMillis / HOUR_MILLIS, clicks);
+        lastDay = add(DAYS_OFFSET, DAYS, lastDay, nowMillis / DAY_MILLIS, clicks);
+    }
+
+    public synchronized ClickStats snapshot(long nowMillis) {
+        return new ClickStats(
+                series(0, MINUTES, lastMinute, nowMillis / MINUTE_MILLIS),
+                series(HOURS_OFFSET, HOURS, lastHour, nowMillis / HOUR_MILLIS),
+                series(DAYS_OFFSET, DAYS, lastDay, nowMillis / DAY_MILLIS));
+    }
+
+    private long add(int offset, int size, long last, long current, int clicks) {
+        if (current > last) {
+            // Обнуляем ячейки интервалов, в которые кликов не было, но не больше одного круга
+            long from = Math.max(last + 1, current - size + 1);
+            for (long bucket = from; bucket <= current; bucket++) {
+                buckets[offset + (int) (bucket % size)] = 0;
+            }
+            last = current;
+        } else if (current <= last - size) {
+            // Интервал уже вышел из кольца (часы перевели назад)
+            return last;
+        }
+        buckets[offset + (int) (current % size)] += clicks;
+        return last;
+    }
+
+    // Значения от самого старого интервала к текущему
+    private int[] series(int offset, int size, long last, long current) {
+        int[] series = new int[size];
+        for (int i = 0; i < size; i++) {
+            long bucket = current - size + 1 + i;
+            if (bucket <= last && bucket > last - size) {
+                series[i] = buckets[offset + (int) (bucket % size)];
+            }
+        }
+        return series;
+    }
+}
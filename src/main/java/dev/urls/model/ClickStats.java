@@ -0,0 +1,55 @@
+package dev.urls.model;
+
+import lombok.Getter;
+
+// Снимок статистики кликов: по минутам за последний час, по часам за последние сутки
+// и по суткам за последние 30 дней. Каждый ряд упорядочен от самого старого интервала к текущему
+@Getter
+public class ClickStats {
+    public static final ClickStats EMPTY = new ClickStats(
+            new int[ClickHistory.MINUTES], new int[ClickHistory.HOURS], new int[ClickHistory.DAYS]);
+
+    private final int[] perMinute;
+    private final int[] perHour;
+    private final int[] perDay;
+
+    public ClickStats(int[] perMinute, int[] perHour, int[] perDay) {
+        this.perMinute = perMinute;
+        this.perHour = perHour;
+        this.perDay = perDay;
+    }
+
+    public long getLastHour() {
+        return sum(perMinute);
+    }
+
+    public long getLastDay() {
+        return sum(perHour);
+    }
+
+    public long getLast30Days() {
+        return sum(perDay);
+    }
+
+    // Суммарная статистика, например по всем ссылкам одного пользователя
+    public ClickStats plus(ClickStats other) {
+        return new ClickStats(add(perMinute, other.perMinute), add(perHour, other.perHour), add(perDay, other.perDay));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Клики за час / сутки / 30 дн.: %d / %d / %d", getLastHour(), getLastDay(), getLast30Days());
+    }
+
+    private static long sum(int[] series) {
+        long sum = 0;
+        for (int clicks : series) sum += clicks;
+        return sum;
+    }
+
+    private static int[] add(int[] left, int[] right) {
+        int[] result = new int[left.length];
+        for (int i = 0; i < left.length; i++) result[i] = left[i] + right[i];
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package dev.urls.model;
+
+import lombok.Getter;
+
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
+
+// Заранее подготовленные данные для перенаправления по ссылке: время жизни в epoch-миллисекундах,
+// готовое значение заголовка Location, сам счётчик кликов и история кликов, чтобы переход не создавал новых объектов.
+// Цель неактивной ссылки тоже кэшируется: переход по ней сразу получает отказ, не обращаясь к хранилищу
+@Getter
+public class RedirectTarget {
+    private final long id;
+    private final String shortPath;
+    private final String location;
+    private final long expiresAtMillis;
+    private final int clicksLimit;
+    private final LongAdder clicksCounter;
+    private final ClickHistory clickHistory;
+    private final boolean active;
+
+    public RedirectTarget(ShortUrl shortUrl, LongAdder clicksCounter, ClickHistory clickHistory) {
+        this.id = shortUrl.getId();
+        this.shortPath = shortUrl.getShortPath();
+        this.location = shortUrl.getOriginalUrl();
+        this.expiresAtMillis = shortUrl.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.clicksLimit = shortUrl.getClicksLimit();
+        this.clicksCounter = clicksCounter;
+        this.clickHistory = clickHistory;
+        this.active = shortUrl.isActive();
+    }
+}
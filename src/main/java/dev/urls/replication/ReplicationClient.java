@@ -0,0 +1,282 @@
+package dev.urls.replication;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+import dev.urls.storage.RecordCodec;
+import dev.urls.storage.StorageEngine;
+import dev.urls.storage.WalRecordType;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static dev.urls.replication.ReplicationProtocol.*;
+
+// Реплика: подключается к ведущему узлу, получает снимок и журнал изменений и применяет их
+// к локальным репозиториям, из которых затем обслуживаются переходы по ссылкам.
+// При обрыве соединения переподключается и продолжает с последней применённой записи.
+//
+// Клики, принятые репликой, копятся по ссылкам и раз в HEARTBEAT_INTERVAL_MS отправляются ведущему
+// вместе с подтверждением позиции. Ведущий учитывает их в счётчике, и новое значение приходит обратно журналом.
+public class ReplicationClient implements Closeable {
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final UrlRepository urls;
+    private final UserRepository users;
+    private final Consumer<String> onUrlChanged;
+    private final BiConsumer<ShortUrl, ShortUrl> onUrlReplaced;
+    private final Map<String, Integer> pendingClicks = new ConcurrentHashMap<>();
+    private final Object sendLock = new Object();
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private volatile DataOutputStream out;
+
+    private long runId;
+    private volatile long appliedSeq = -1;
+    private volatile long leaderSeq = -1;
+    private volatile long lagMillis;
+    private volatile boolean connected;
+
+    // onUrlChanged вызывается с коротким путем каждой ссылки, изменённой записью журнала.
+    // onUrlReplaced получает прежнюю и новую версию ссылки до сохранения или после удаления (null — версии нет)
+    public ReplicationClient(String leader, String secret, UrlRepository urls, UserRepository users,
+                             Consumer<String> onUrlChanged, BiConsumer<ShortUrl, ShortUrl> onUrlReplaced) {
+        if (secret.isEmpty()) throw new IllegalArgumentException("Не задан общий секрет репликации (replication.secret)");
+        this.secret = secret;
+        int colon = leader.lastIndexOf(':');
+        this.host = leader.substring(0, colon);
+        this.port = Integer.parseInt(leader.substring(colon + 1));
+        this.urls = urls;
+        this.users = users;
+        this.onUrlChanged = onUrlChanged;
+        this.onUrlReplaced = onUrlReplaced;
+    }
+
+    public void start() {
+        Thread reader = new Thread(this::connectLoop, "replication-client");
+        reader.setDaemon(true);
+        reader.start();
+        Thread sender = new Thread(this::sendLoop, "replication-acks");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    // Клики по ссылке, которые нужно учесть на ведущем узле
+    public void sendClicks(String shortPath, int clicks) {
+        pendingClicks.merge(shortPath, clicks, Integer::sum);
+    }
+
+    // Сколько записей журнала ведущего ещё не применено
+    public long getLagRecords() {
+        return Math.max(0, leaderSeq - appliedSeq);
+    }
+
+    // Сколько прошло от записи изменения на ведущем до его применения на реплике (по последней записи)
+    public long getLagMillis() {
+        return getLagRecords() == 0 ? 0 : lagMillis;
+    }
+
+    public String getStatus() {
+        return String.format("Реплика %s:%d, %s: применено %d из %d записей, отставание %d записей / %d мс, кликов к отправке %d%n",
+                host, port, connected ? "подключена" : "нет соединения",
+                appliedSeq + 1, leaderSeq + 1, getLagRecords(), getLagMillis(), pendingClicks.size());
+    }
+
+    // Отправляет оставшиеся клики и закрывает соединение
+    @Override
+    public void close() {
+        running = false;
+        try {
+            sendPending();
+        } catch (IOException ignored) {
+            // Ведущий недоступен, клики потеряны
+        }
+        closeSocket();
+    }
+
+    private void connectLoop() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                connection.connect(new InetSocketAddress(host, port));
+                connection.setTcpNoDelay(true);
+                socket = connection;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                synchronized (sendLock) {
+                    output.writeInt(MAGIC);
+                    output.writeUTF(secret);
+                    output.writeLong(runId);
+                    output.writeLong(appliedSeq);
+                    output.flush();
+                    out = output;
+                }
+                connected = true;
+                receive(in);
+            } catch (IOException e) {
+                // Ведущий молча закрывает соединение и при неверном секрете
+                String reason = e instanceof EOFException ? "ведущий закрыл соединение (проверьте replication.secret)" : e.getMessage();
+                if (running) System.out.println("Репликация: нет связи с ведущим " + host + ":" + port + ": " + reason);
+            } finally {
+                connected = false;
+                out = null;
+            }
+            if (!running) return;
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(DataInputStream in) throws IOException {
+        // Позиция снимка принимается только после его полной загрузки, чтобы при обрыве снимок начался заново
+        Set<String> snapshotPaths = null;
+        long snapshotRunId = 0;
+        long snapshotSeq = 0;
+        while (true) {
+            byte kind = in.readByte();
+            switch (kind) {
+                case SNAPSHOT -> {
+                    snapshotRunId = in.readLong();
+                    snapshotSeq = in.readLong();
+                    snapshotPaths = new HashSet<>();
+                    System.out.println("Репликация: загрузка снимка с ведущего узла");
+                }
+                case SNAPSHOT_RECORD -> {
+                    WalRecordType type = WalRecordType.fromCode(in.readByte());
+                    Object payload = readPayload(in, type);
+                    apply(type, payload);
+                    if (payload instanceof ShortUrl shortUrl) snapshotPaths.add(shortUrl.getShortPath());
+                }
+                case SNAPSHOT_END -> {
+                    removeMissing(snapshotPaths);
+                    runId = snapshotRunId;
+                    appliedSeq = snapshotSeq - 1;
+                    leaderSeq = appliedSeq;
+                    System.out.println("Репликация: снимок загружен, ссылок " + snapshotPaths.size());
+                    snapshotPaths = null;
+                }
+                case RESUME -> {
+                    runId = in.readLong();
+                    System.out.println("Репликация: журнал продолжается с записи " + (appliedSeq + 1));
+                }
+                case RECORD -> {
+                    long seq = in.readLong();
+                    long timestamp = in.readLong();
+                    WalRecordType type = WalRecordType.fromCode(in.readByte());
+                    apply(type, readPayload(in, type));
+                    appliedSeq = seq;
+                    leaderSeq = Math.max(leaderSeq, seq);
+                    lagMillis = Math.max(0, System.currentTimeMillis() - timestamp);
+                }
+                case HEARTBEAT -> leaderSeq = in.readLong();
+                default -> throw new IOException("неизвестный кадр " + kind);
+            }
+        }
+    }
+
+    private static Object readPayload(DataInputStream in, WalRecordType type) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return RecordCodec.read(ByteBuffer.wrap(data), type);
+    }
+
+    // Сохранения и удаления ссылок применяются здесь, а не в StorageEngine.apply: сервису нужны
+    // прежние версии ссылок, чтобы вести учёт общих адресов так же, как на ведущем
+    @SuppressWarnings("unchecked")
+    private void apply(WalRecordType type, Object payload) {
+        switch (type) {
+            case URL_SAVE -> saveUrl((ShortUrl) payload);
+            case URL_SAVE_BATCH -> ((List<ShortUrl>) payload).forEach(this::saveUrl);
+            case URL_DELETE -> deleteUrls(List.of((String) payload));
+            case URL_DELETE_BATCH -> deleteUrls((List<String>) payload);
+            case URL_CLICKS -> {
+                StorageEngine.apply(urls, users, type, payload);
+                onUrlChanged.accept(((RecordCodec.ClicksUpdate) payload).shortPath());
+            }
+            case USER_SAVE -> StorageEngine.apply(urls, users, type, payload);
+        }
+    }
+
+    private void saveUrl(ShortUrl shortUrl) {
+        onUrlReplaced.accept(urls.findByPath(shortUrl.getShortPath()).orElse(null), shortUrl);
+        urls.save(shortUrl);
+        onUrlChanged.accept(shortUrl.getShortPath());
+    }
+
+    private void deleteUrls(List<String> paths) {
+        for (ShortUrl deleted : urls.deleteAll(paths)) onUrlReplaced.accept(deleted, null);
+        paths.forEach(onUrlChanged);
+    }
+
+    // После повторного снимка удаляет ссылки, которых на ведущем уже нет
+    private void removeMissing(Set<String> snapshotPaths) {
+        List<String> missing = new ArrayList<>();
+        urls.forEach(shortUrl -> {
+            if (!snapshotPaths.contains(shortUrl.getShortPath())) missing.add(shortUrl.getShortPath());
+        });
+        if (!missing.isEmpty()) deleteUrls(missing);
+    }
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                Thread.sleep(HEARTBEAT_INTERVAL_MS);
+                sendPending();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // Соединение оборвалось: поток чтения переподключится, клики останутся в очереди
+                closeSocket();
+            }
+        }
+    }
+
+    private void sendPending() throws IOException {
+        synchronized (sendLock) {
+            DataOutputStream output = out;
+            if (output == null) return;
+            Map<String, Integer> sending = new HashMap<>();
+            try {
+                for (String shortPath : pendingClicks.keySet()) {
+                    Integer clicks = pendingClicks.remove(shortPath);
+                    if (clicks == null) continue;
+                    sending.put(shortPath, clicks);
+                    output.writeByte(CLICKS);
+                    output.writeUTF(shortPath);
+                    output.writeInt(clicks);
+                }
+                output.writeByte(ACK);
+                output.writeLong(appliedSeq);
+                output.flush();
+            } catch (IOException e) {
+                // Дошло ли что-то до ведущего, неизвестно: возвращаем клики в очередь,
+                // лучше учесть клик дважды, чем потерять
+                sending.forEach((shortPath, clicks) -> pendingClicks.merge(shortPath, clicks, Integer::sum));
+                throw e;
+            }
+        }
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException ignored) {
+            // Соединение уже закрыто
+        }
+    }
+}
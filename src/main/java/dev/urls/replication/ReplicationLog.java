@@ -0,0 +1,129 @@
+package dev.urls.replication;
+
+import dev.urls.storage.RecordCodec;
+import dev.urls.storage.WalRecordType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+// Журнал изменений ведущего узла для реплик: последние capacity записей в кольце в памяти.
+// Каждая запись получает номер (позицию в журнале), по которому реплика сообщает, откуда продолжать.
+// Реплика, отставшая больше чем на capacity записей, заново получает полный снимок.
+//
+// Пока реплика получает снимок и догоняет ведущего, её позиция удерживается (hold): если кольцо заполнено,
+// а запись ещё нужна реплике, кольцо вдвое увеличивается, но не больше чем в MAX_GROWTH раз от capacity.
+// Иначе при потоке изменений больше capacity за время снимка реплика отставала бы сразу после каждого снимка.
+// Увеличенное кольцо обратно не уменьшается: в следующий раз снимок займёт примерно столько же.
+//
+// Формат записи тот же, что в журнале на диске (RecordCodec), поэтому все записи идемпотентны
+// и их можно применять поверх снимка, снятого позже начала журнала.
+public class ReplicationLog {
+    private static final int MAX_GROWTH = 4;
+
+    private final int maxCapacity;
+    private Entry[] entries;
+    // Записи с номерами [firstSeq, nextSeq) есть в кольце
+    private long firstSeq;
+    private long nextSeq;
+    // Удерживаемые позиции реплик: номер записи -> число реплик
+    private final TreeMap<Long, Integer> holds = new TreeMap<>();
+
+    public record Entry(long seq, long timestampMillis, WalRecordType type, byte[] data) {
+    }
+
+    public ReplicationLog(int capacity) {
+        this.entries = new Entry[capacity];
+        this.maxCapacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) capacity * MAX_GROWTH);
+    }
+
+    public void append(WalRecordType type, Object payload) {
+        // Кодируем вне блокировки, под ней только выдача номера и запись в кольцо
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            RecordCodec.write(new DataOutputStream(bytes), type, payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (nextSeq - firstSeq == entries.length) {
+                if (!holds.isEmpty() && holds.firstKey() <= firstSeq && entries.length < maxCapacity) grow();
+                else firstSeq++;
+            }
+            entries[(int) (nextSeq % entries.length)] = new Entry(nextSeq, now, type, bytes.toByteArray());
+            nextSeq++;
+            notifyAll();
+        }
+    }
+
+    private void grow() {
+        Entry[] grown = new Entry[(int) Math.min(maxCapacity, (long) entries.length * 2)];
+        for (long seq = firstSeq; seq < nextSeq; seq++) {
+            grown[(int) (seq % grown.length)] = entries[(int) (seq % entries.length)];
+        }
+        entries = grown;
+        System.out.println("Репликация: журнал в памяти увеличен до " + grown.length
+                + " записей, чтобы отстающая реплика не потеряла позицию (replication.log.capacity мал для такого потока изменений)");
+    }
+
+    // Удерживает записи начиная с seq для реплики, которая продолжает журнал; false — их уже нет в кольце
+    public synchronized boolean hold(long seq) {
+        if (seq < firstSeq || seq > nextSeq) return false;
+        holds.merge(seq, 1, Integer::sum);
+        return true;
+    }
+
+    // Удерживает записи начиная со следующей для реплики, которой отправляется снимок, и возвращает её номер
+    public synchronized long holdNext() {
+        holds.merge(nextSeq, 1, Integer::sum);
+        return nextSeq;
+    }
+
+    // Реплика прочитала журнал до toSeq
+    public synchronized void moveHold(long fromSeq, long toSeq) {
+        if (fromSeq == toSeq) return;
+        release(fromSeq);
+        holds.merge(toSeq, 1, Integer::sum);
+    }
+
+    public synchronized void release(long seq) {
+        holds.computeIfPresent(seq, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public synchronized int getCapacity() {
+        return entries.length;
+    }
+
+    // Номер последней записи, -1 если журнал пуст
+    public synchronized long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    public synchronized long getFirstSeq() {
+        return firstSeq;
+    }
+
+    // Возвращает до max записей начиная с fromSeq, при необходимости ждёт новые записи не дольше timeoutMillis.
+    // null — записи fromSeq уже вытеснены из кольца и реплике нужен снимок
+    public synchronized List<Entry> read(long fromSeq, int max, long timeoutMillis) throws InterruptedException {
+        if (fromSeq < firstSeq) return null;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (fromSeq >= nextSeq) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return List.of();
+            wait(remaining);
+        }
+        if (fromSeq < firstSeq) return null;
+        int count = (int) Math.min(max, nextSeq - fromSeq);
+        List<Entry> result = new ArrayList<>(count);
+        for (long seq = fromSeq; seq < fromSeq + count; seq++) {
+            result.add(entries[(int) (seq % entries.length)]);
+        }
+        return result;
+    }
+}
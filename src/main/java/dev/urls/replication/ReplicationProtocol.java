@@ -0,0 +1,40 @@
+package dev.urls.replication;
+
+// Кадры протокола репликации. Все числа в формате DataOutput, строки — writeUTF.
+//
+// Реплика -> ведущий:
+//   HELLO         [int magic][utf secret][long runId][long appliedSeq]
+//                                                             первым кадром: общий секрет и откуда продолжать
+//   ACK           [byte][long appliedSeq]                     сколько применено, для оценки отставания
+//   CLICKS        [byte][utf shortPath][int clicks]           клики, принятые репликой
+// Ведущий -> реплика:
+//   SNAPSHOT      [byte][long runId][long seq]                дальше идёт полный снимок, после него журнал с seq
+//   SNAPSHOT_RECORD [byte][byte type][int length][данные]
+//   SNAPSHOT_END  [byte]
+//   RESUME        [byte][long runId]                          журнал продолжается с appliedSeq + 1
+//   RECORD        [byte][long seq][long timestampMillis][byte type][int length][данные]
+//   HEARTBEAT     [byte][long lastSeq]                        последняя запись ведущего: после каждой пачки
+//                                                             и раз в HEARTBEAT_INTERVAL_MS без новых записей
+//
+// runId меняется при каждом запуске ведущего: номера записей прежнего запуска для нового ничего не значат
+final class ReplicationProtocol {
+    static final int MAGIC = 0x55524c52;
+
+    static final byte ACK = 1;
+    static final byte CLICKS = 2;
+
+    static final byte SNAPSHOT = 1;
+    static final byte SNAPSHOT_RECORD = 2;
+    static final byte SNAPSHOT_END = 3;
+    static final byte RESUME = 4;
+    static final byte RECORD = 5;
+    static final byte HEARTBEAT = 6;
+
+    static final long HEARTBEAT_INTERVAL_MS = 100;
+    static final int MAX_RECORDS_PER_READ = 1024;
+    // Сколько ведущий ждёт HELLO от нового подключения
+    static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    private ReplicationProtocol() {
+    }
+}
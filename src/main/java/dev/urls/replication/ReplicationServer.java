@@ -0,0 +1,271 @@
+package dev.urls.replication;
+
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+import dev.urls.storage.RecordCodec;
+import dev.urls.storage.WalRecordType;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+import static dev.urls.replication.ReplicationProtocol.*;
+
+// Ведущий узел: принимает подключения реплик по TCP и передаёт им журнал изменений.
+// Новой или слишком отставшей реплике сначала отправляется полный снимок текущего состояния,
+// затем журнал с позиции, запомненной до начала снимка. Записи идемпотентны, поэтому изменения,
+// попавшие и в снимок, и в журнал, применяются повторно без вреда.
+// Каждая реплика обслуживается своими виртуальными потоками: один пишет журнал, другой читает подтверждения и клики.
+//
+// Реплика получает все данные и может менять счётчики кликов, поэтому ведущий слушает только адрес replication.bind
+// (по умолчанию loopback) и обслуживает только реплики, приславшие в HELLO общий секрет replication.secret.
+public class ReplicationServer implements Closeable {
+    private final String bind;
+    private final int port;
+    private final byte[] secret;
+    private final ReplicationLog log;
+    private final UrlRepository urls;
+    private final UserRepository users;
+    private final BiConsumer<String, Integer> onClicks;
+    private final long runId = ThreadLocalRandom.current().nextLong();
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    // onClicks получает клики, принятые репликами: короткий путь и число кликов
+    public ReplicationServer(String bind, int port, String secret, ReplicationLog log, UrlRepository urls,
+                             UserRepository users, BiConsumer<String, Integer> onClicks) {
+        if (secret.isEmpty()) throw new IllegalArgumentException("Не задан общий секрет репликации (replication.secret)");
+        this.bind = bind;
+        this.port = port;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.log = log;
+        this.urls = urls;
+        this.users = users;
+        this.onClicks = onClicks;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bind));
+        Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Репликация: ведущий узел ждёт реплики на " + bind + ":" + port);
+    }
+
+    // Наибольшее отставание среди подключённых реплик в записях журнала
+    public long getMaxLagRecords() {
+        long lastSeq = log.getLastSeq();
+        long lag = 0;
+        for (Session session : sessions) lag = Math.max(lag, lastSeq - session.ackedSeq);
+        return lag;
+    }
+
+    public int getReplicaCount() {
+        return sessions.size();
+    }
+
+    public String getStatus() {
+        long lastSeq = log.getLastSeq();
+        StringBuilder status = new StringBuilder(String.format("Ведущий узел: записей в журнале %d, в памяти с %d, реплик %d%n",
+                lastSeq + 1, log.getFirstSeq(), sessions.size()));
+        for (Session session : sessions) {
+            status.append(String.format("  %s: применено %d, отставание %d записей%n",
+                    session.address, session.ackedSeq + 1, lastSeq - session.ackedSeq));
+        }
+        return status.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) serverSocket.close();
+        for (Session session : sessions) session.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread.ofVirtual().name("replication-" + session.address).start(session::run);
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                System.out.println("Репликация: ошибка подключения реплики: " + e.getMessage());
+            }
+        }
+    }
+
+    private final class Session {
+        private final Socket socket;
+        private final String address;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private volatile long ackedSeq = -1;
+        // Позиция, удерживаемая в журнале для этой реплики, -1 — не удерживается
+        private long heldSeq = -1;
+        // Когда начался снимок и какой была позиция журнала: по ним оценивается нужный размер журнала
+        private long snapshotStartMillis;
+        private long snapshotSeq = -1;
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.address = socket.getRemoteSocketAddress().toString();
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        void run() {
+            try {
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                if (in.readInt() != MAGIC) throw new IOException("неизвестный протокол");
+                // Сравнение за постоянное время, чтобы секрет нельзя было подобрать по задержке ответа
+                if (!MessageDigest.isEqual(secret, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                    throw new IOException("неверный секрет репликации");
+                }
+                long replicaRunId = in.readLong();
+                long appliedSeq = in.readLong();
+                socket.setSoTimeout(0);
+                long nextSeq;
+                // Продолжить журнал можно, только если реплика шла за этим же запуском и её позиция ещё в памяти
+                if (replicaRunId == runId && log.hold(appliedSeq + 1)) {
+                    heldSeq = appliedSeq + 1;
+                    out.writeByte(RESUME);
+                    out.writeLong(runId);
+                    nextSeq = appliedSeq + 1;
+                    System.out.println("Репликация: реплика " + address + " продолжает с записи " + nextSeq);
+                } else {
+                    nextSeq = sendSnapshot();
+                }
+                ackedSeq = nextSeq - 1;
+                Thread.ofVirtual().name("replication-acks-" + address).start(this::readLoop);
+                streamLog(nextSeq);
+            } catch (IOException e) {
+                System.out.println("Репликация: реплика " + address + " отключилась: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (heldSeq >= 0) log.release(heldSeq);
+                close();
+            }
+        }
+
+        // Возвращает номер записи журнала, с которой продолжать после снимка
+        private long sendSnapshot() throws IOException {
+            long start = System.nanoTime();
+            // Позиция запоминается и удерживается до обхода: всё, что изменится во время обхода, придёт и журналом
+            long nextSeq = log.holdNext();
+            heldSeq = nextSeq;
+            snapshotStartMillis = System.currentTimeMillis();
+            snapshotSeq = nextSeq;
+            out.writeByte(SNAPSHOT);
+            out.writeLong(runId);
+            out.writeLong(nextSeq);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(buffer);
+            long[] records = new long[1];
+            try {
+                users.forEach(user -> writeSnapshotRecord(buffer, record, WalRecordType.USER_SAVE, user, records));
+                urls.forEach(shortUrl -> writeSnapshotRecord(buffer, record, WalRecordType.URL_SAVE, shortUrl, records));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeByte(SNAPSHOT_END);
+            out.flush();
+            System.out.printf("Репликация: реплике %s отправлен снимок, %d записей за %d мс%n",
+                    address, records[0], (System.nanoTime() - start) / 1_000_000);
+            return nextSeq;
+        }
+
+        private void writeSnapshotRecord(ByteArrayOutputStream buffer, DataOutputStream record,
+                                         WalRecordType type, Object payload, long[] records) {
+            try {
+                buffer.reset();
+                RecordCodec.write(record, type, payload);
+                out.writeByte(SNAPSHOT_RECORD);
+                out.writeByte(type.getCode());
+                out.writeInt(buffer.size());
+                buffer.writeTo(out);
+                records[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void streamLog(long nextSeq) throws IOException, InterruptedException {
+            while (!socket.isClosed()) {
+                List<ReplicationLog.Entry> entries = log.read(nextSeq, MAX_RECORDS_PER_READ, HEARTBEAT_INTERVAL_MS);
+                // Реплика отстала больше, чем хранится в памяти, даже с увеличенным журналом:
+                // после переподключения она получит снимок
+                if (entries == null) throw new IOException(overrunMessage());
+                for (ReplicationLog.Entry entry : entries) {
+                    out.writeByte(RECORD);
+                    out.writeLong(entry.seq());
+                    out.writeLong(entry.timestampMillis());
+                    out.writeByte(entry.type().getCode());
+                    out.writeInt(entry.data().length);
+                    out.write(entry.data());
+                }
+                nextSeq += entries.size();
+                log.moveHold(heldSeq, nextSeq);
+                heldSeq = nextSeq;
+                // По последней записи ведущего реплика считает своё отставание
+                out.writeByte(HEARTBEAT);
+                out.writeLong(log.getLastSeq());
+                out.flush();
+            }
+        }
+
+        // Сколько записей пришло с начала снимка: журнал должен вмещать их с запасом, иначе реплика
+        // после каждого снимка снова отстаёт и получает новый снимок
+        private String overrunMessage() {
+            String message = "реплика отстала больше чем на размер журнала (" + log.getCapacity() + " записей)";
+            if (snapshotSeq < 0) return message;
+            long written = log.getLastSeq() + 1 - snapshotSeq;
+            return message + ": с начала снимка " + (System.currentTimeMillis() - snapshotStartMillis) + " мс назад записано "
+                    + written + " изменений, увеличьте replication.log.capacity хотя бы до " + written * 2;
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    byte kind = in.readByte();
+                    switch (kind) {
+                        case ACK -> ackedSeq = in.readLong();
+                        case CLICKS -> {
+                            String shortPath = in.readUTF();
+                            int clicks = in.readInt();
+                            try {
+                                onClicks.accept(shortPath, clicks);
+                            } catch (RuntimeException e) {
+                                System.out.println("Репликация: ошибка учёта кликов реплики по " + shortPath + ": " + e.getMessage());
+                            }
+                        }
+                        default -> throw new IOException("неизвестный кадр " + kind);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (!sessions.remove(this)) return;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+}
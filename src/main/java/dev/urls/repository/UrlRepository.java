@@ -2,19 +2,46 @@ package dev.urls.repository;
 
 import dev.urls.model.ShortUrl;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UrlRepository {
 
     long getNextUrlId();
 
+    // Выдаёт count идущих подряд id одним обращением и возвращает первый из них
+    long getNextUrlIds(int count);
+
     void save(ShortUrl shortUrl);
 
+    // Атомарно сохраняет ссылку, только если её короткий путь ещё не занят
+    boolean saveIfAbsent(ShortUrl shortUrl);
+
+    // Пакетный saveIfAbsent: все ссылки сохраняются за один проход (одна блокировка, одна запись в журнал).
+    // Возвращает ссылки, которые не сохранены, потому что их путь уже занят
+    List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls);
+
     void delete(String path);
 
+    // Удаляет ссылки по путям за один проход и возвращает те, что действительно были удалены
+    List<ShortUrl> deleteAll(Collection<String> paths);
+
+    // Лёгкая запись счётчика кликов без пересохранения всей ссылки
+    void updateClicksCounter(String path, int clicksCounter);
+
     Optional<ShortUrl> findByPath(String path);
 
     List<ShortUrl> findAllUrlsByUserUuid(UUID uuid);
+
+    // Постраничная выборка ссылок пользователя в порядке их создания
+    List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit);
+
+    // Число хранимых ссылок
+    long count();
+
+    // Обход всех ссылок, например для сохранения снимка
+    void forEach(Consumer<ShortUrl> action);
 }
@@ -5,9 +5,15 @@ import dev.urls.model.User;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UserRepository {
     void save(User user);
+
+    // Атомарно сохраняет пользователя, только если его имя ещё не занято
+    boolean saveIfAbsent(User user);
+
     Optional<User> findByUuid(UUID uuid);
     Optional<User> findByUsername(String username);
+    void forEach(Consumer<User> action);
 }
@@ -0,0 +1,366 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Ограниченный кэш findByPath перед любым репозиторием ссылок (политика в духе W-TinyLFU).
+// Новые ссылки попадают в небольшое окно LRU, вытесненные из окна соревнуются за место в основной
+// области (SLRU: испытательный и защищённый сегменты) по частоте обращений из счётного скетча.
+// Так разовые обращения не вымывают из кэша горячие ссылки.
+//
+// Чтение из кэша не блокируется. Учёт обращений идёт под блокировкой политики, и если она занята,
+// обращение просто не учитывается: для частотной политики потеря части отсчётов не важна.
+// Сохранение и удаление ссылки убирают её из кэша, так что изменения лимита и времени жизни
+// из UrlServiceImpl (они идут через save) сразу видны при следующем поиске.
+public class CachingUrlRepository implements UrlRepository {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = -1;
+
+    private final UrlRepository delegate;
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock policyLock = new ReentrantLock();
+    // Очереди политики: двусвязные списки с фиктивной головой, от давних к недавним
+    private final Node window = new Node(null, null);
+    private final Node probation = new Node(null, null);
+    private final Node protectedQueue = new Node(null, null);
+    private int windowSize;
+    private int mainSize;
+    private int protectedSize;
+    // Счётчик инвалидаций (меняется под блокировкой политики): загрузка, во время которой
+    // ссылку изменили, не кладёт в кэш старое значение
+    private volatile long invalidations;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Node {
+        final String path;
+        final ShortUrl value;
+        int queue;
+        Node prev = this;
+        Node next = this;
+
+        Node(String path, ShortUrl value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
+
+    public CachingUrlRepository(UrlRepository delegate, int maximumSize) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("Размер кэша ссылок должен быть не меньше 2");
+        }
+        this.delegate = delegate;
+        this.windowMax = Math.max(1, maximumSize / 100);
+        this.mainMax = maximumSize - windowMax;
+        this.protectedMax = mainMax * 4 / 5;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        Node node = data.get(path);
+        if (node != null) {
+            hits.increment();
+            if (policyLock.tryLock()) {
+                try {
+                    sketch.increment(path);
+                    onHit(node);
+                } finally {
+                    policyLock.unlock();
+                }
+            }
+            return Optional.of(node.value);
+        }
+        misses.increment();
+        long seenInvalidations = invalidations;
+        Optional<ShortUrl> loaded = delegate.findByPath(path);
+        policyLock.lock();
+        try {
+            sketch.increment(path);
+            if (loaded.isPresent() && invalidations == seenInvalidations && !data.containsKey(path)) {
+                admit(new Node(path, loaded.get()));
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        return loaded;
+    }
+
+    @Override
+    public long getNextUrlId() {
+        return delegate.getNextUrlId();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return delegate.getNextUrlIds(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        delegate.save(shortUrl);
+        invalidate(shortUrl.getShortPath());
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        if (!delegate.saveIfAbsent(shortUrl)) return false;
+        invalidate(shortUrl.getShortPath());
+        return true;
+    }
+
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        List<ShortUrl> rejected = delegate.saveAllIfAbsent(shortUrls);
+        // Новых ссылок в кэше быть не может, но отрицательный результат поиска, начатого до вставки,
+        // не должен попасть в кэш после неё
+        for (ShortUrl shortUrl : shortUrls) invalidate(shortUrl.getShortPath());
+        return rejected;
+    }
+
+    @Override
+    public void delete(String path) {
+        delegate.delete(path);
+        invalidate(path);
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        List<ShortUrl> deleted = delegate.deleteAll(paths);
+        for (ShortUrl shortUrl : deleted) invalidate(shortUrl.getShortPath());
+        return deleted;
+    }
+
+    // Клики слишком частые, чтобы каждый раз выбрасывать ссылку из кэша: счётчик обновляется на месте
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        delegate.updateClicksCounter(path, clicksCounter);
+        Node node = data.get(path);
+        if (node != null) node.value.setClicksCounter(clicksCounter);
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return delegate.findAllUrlsByUserUuid(uuid);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        return delegate.findUrlsByUserUuid(uuid, offset, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        delegate.forEach(action);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getSize() {
+        return data.size();
+    }
+
+    public String getStats() {
+        long hitCount = getHitCount();
+        long requests = hitCount + getMissCount();
+        return String.format("Кэш ссылок: %d записей, попаданий %d, промахов %d (%.1f%% попаданий), вытеснено %d",
+                getSize(), hitCount, getMissCount(), requests > 0 ? 100.0 * hitCount / requests : 0.0, getEvictionCount());
+    }
+
+    private void invalidate(String path) {
+        policyLock.lock();
+        try {
+            invalidations++;
+            Node node = data.remove(path);
+            if (node != null) unlink(node);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void onHit(Node node) {
+        switch (node.queue) {
+            case WINDOW -> moveToTail(window, node);
+            case PROTECTED -> moveToTail(protectedQueue, node);
+            case PROBATION -> {
+                // Повторное обращение в испытательном сегменте переводит ссылку в защищённый
+                unlink(node);
+                mainSize++;
+                protectedSize++;
+                node.queue = PROTECTED;
+                append(protectedQueue, node);
+                if (protectedSize > protectedMax) {
+                    Node demoted = protectedQueue.next;
+                    unlink(demoted);
+                    mainSize++;
+                    demoted.queue = PROBATION;
+                    append(probation, demoted);
+                }
+            }
+            default -> {
+                // Ссылку уже убрали из кэша
+            }
+        }
+    }
+
+    private void admit(Node node) {
+        data.put(node.path, node);
+        node.queue = WINDOW;
+        windowSize++;
+        append(window, node);
+        if (windowSize <= windowMax) return;
+
+        // Самая давняя ссылка окна претендует на место в основной области
+        Node candidate = window.next;
+        unlink(candidate);
+        if (mainSize < mainMax) {
+            toProbation(candidate);
+            return;
+        }
+        Node victim = probation.next != probation ? probation.next : protectedQueue.next;
+        if (sketch.frequency(candidate.path) > sketch.frequency(victim.path)) {
+            evict(victim);
+            toProbation(candidate);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    private void toProbation(Node node) {
+        node.queue = PROBATION;
+        mainSize++;
+        append(probation, node);
+    }
+
+    private void evict(Node node) {
+        if (node.queue != REMOVED) unlink(node);
+        data.remove(node.path, node);
+        evictions.increment();
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW -> windowSize--;
+            case PROBATION -> mainSize--;
+            case PROTECTED -> {
+                mainSize--;
+                protectedSize--;
+            }
+            default -> {
+                return;
+            }
+        }
+        node.queue = REMOVED;
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node;
+        node.next = node;
+    }
+
+    private static void append(Node head, Node node) {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private static void moveToTail(Node head, Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        append(head, node);
+    }
+
+    // Count-min скетч с четырьмя 4-битными счётчиками на ключ. Когда число отсчётов достигает
+    // десятикратного размера кэша, все счётчики делятся пополам, чтобы старая популярность забывалась
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            this.table = new long[Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1];
+            this.sampleSize = 10 * maximumSize;
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & 0xF));
+            }
+            return frequency;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                int offset = offsetOf(hash, i);
+                if (((table[index] >>> offset) & 0xF) != 0xF) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) reset();
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        // Каждая из четырёх функций выбирает свой 4-битный счётчик из 16 в ячейке
+        private static int offsetOf(int hash, int i) {
+            return ((hash >>> (i << 3)) & 0xF) << 2;
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+// Фильтр несуществующих путей перед репозиторием ссылок: поиск пути, которого точно нет,
+// возвращает пустой результат, не обращаясь к хранилищу (боты перебирают случайные пути).
+// Используется считающий фильтр Блума, поэтому удаление ссылок тоже поддерживается.
+//
+// Путь добавляется в фильтр до записи в хранилище и удаляется после удаления из него,
+// так что параллельный поиск никогда не получает ложный отрицательный ответ.
+// Изменения одного пути, в том числе в пачках, сериализуются полосатой блокировкой, чтобы фильтр не учёл их дважды.
+public class FilteringUrlRepository implements UrlRepository {
+    private final UrlRepository delegate;
+    private final CountingBloomFilter filter;
+    private final PathLocks locks = new PathLocks();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public FilteringUrlRepository(UrlRepository delegate, long expectedSize, double falsePositiveRate) {
+        if (expectedSize <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Ожидаемое число ссылок должно быть больше 0, а доля ложных срабатываний — в (0, 1)");
+        }
+        this.delegate = delegate;
+        this.filter = new CountingBloomFilter(expectedSize, falsePositiveRate);
+        delegate.forEach(shortUrl -> filter.add(shortUrl.getShortPath()));
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        if (!filter.mightContain(path)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        Optional<ShortUrl> shortUrl = delegate.findByPath(path);
+        if (shortUrl.isEmpty()) falsePositives.increment();
+        return shortUrl;
+    }
+
+    @Override
+    public long getNextUrlId() {
+        return delegate.getNextUrlId();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return delegate.getNextUrlIds(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        String path = shortUrl.getShortPath();
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            if (delegate.findByPath(path).isEmpty()) filter.add(path);
+            delegate.save(shortUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        String path = shortUrl.getShortPath();
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            filter.add(path);
+            if (delegate.saveIfAbsent(shortUrl)) return true;
+            filter.remove(path);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Без блокировок путей пачка могла разойтись с одиночным save или delete того же пути
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        return locks.withLocks(shortUrls.stream().map(ShortUrl::getShortPath).toList(), () -> {
+            for (ShortUrl shortUrl : shortUrls) filter.add(shortUrl.getShortPath());
+            List<ShortUrl> rejected = delegate.saveAllIfAbsent(shortUrls);
+            for (ShortUrl shortUrl : rejected) filter.remove(shortUrl.getShortPath());
+            return rejected;
+        });
+    }
+
+    @Override
+    public void delete(String path) {
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            if (delegate.findByPath(path).isEmpty()) return;
+            delegate.delete(path);
+            filter.remove(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Из фильтра убираются только действительно удалённые пути и только после удаления из хранилища
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        return locks.withLocks(paths, () -> {
+            List<ShortUrl> deleted = delegate.deleteAll(paths);
+            for (ShortUrl shortUrl : deleted) filter.remove(shortUrl.getShortPath());
+            return deleted;
+        });
+    }
+
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        delegate.updateClicksCounter(path, clicksCounter);
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return delegate.findAllUrlsByUserUuid(uuid);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        return delegate.findUrlsByUserUuid(uuid, offset, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        delegate.forEach(action);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    public String getStats() {
+        return String.format("Фильтр путей: %d счётчиков, %d хеш-функций, отсечено запросов %d, ложных срабатываний %d",
+                filter.size(), filter.hashCount(), getRejectedCount(), getFalsePositiveCount());
+    }
+
+    // Считающий фильтр Блума: 4-битные счётчики по 16 в long, обновляются через CAS без блокировок.
+    // Фильтр блочный: все счётчики одного ключа лежат в блоке из 8 long (одна линия кэша), поэтому
+    // проверка стоит одного промаха кэша вместо k.
+    // Переполненный счётчик больше не уменьшается, иначе удаление могло бы дать ложный отрицательный ответ
+    private static final class CountingBloomFilter {
+        private static final long COUNTER_MAX = 0xF;
+        private static final int BLOCK_LONGS = 8;
+        private static final int BLOCK_COUNTERS = BLOCK_LONGS * 16;
+
+        private final AtomicLongArray counters;
+        private final int blocks;
+        private final int hashCount;
+
+        CountingBloomFilter(long expectedSize, double falsePositiveRate) {
+            // Блок из 128 счётчиков заполняется неравномерно, и блочный фильтр ошибается заметно чаще обычного
+            // того же размера, поэтому размер считается по вчетверо меньшей доле ложных срабатываний
+            double ln2 = Math.log(2);
+            long optimalSize = (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate / 4) / (ln2 * ln2));
+            this.hashCount = Math.max(1, (int) Math.round((double) optimalSize / expectedSize * ln2));
+            this.blocks = Math.toIntExact((optimalSize + BLOCK_COUNTERS - 1) / BLOCK_COUNTERS);
+            this.counters = new AtomicLongArray(blocks * BLOCK_LONGS);
+        }
+
+        long size() {
+            return (long) blocks * BLOCK_COUNTERS;
+        }
+
+        int hashCount() {
+            return hashCount;
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash64(key);
+            int base = block(hash);
+            long bits = mix(hash);
+            for (int i = 0; i < hashCount; i++, bits = nextBits(bits, i)) {
+                int counter = (int) bits & (BLOCK_COUNTERS - 1);
+                if (((counters.get(base + (counter >>> 4)) >>> shift(counter)) & COUNTER_MAX) == 0) return false;
+            }
+            return true;
+        }
+
+        void add(String key) {
+            update(key, 1);
+        }
+
+        void remove(String key) {
+            update(key, -1);
+        }
+
+        private void update(String key, int delta) {
+            long hash = hash64(key);
+            int base = block(hash);
+            long bits = mix(hash);
+            for (int i = 0; i < hashCount; i++, bits = nextBits(bits, i)) {
+                int counter = (int) bits & (BLOCK_COUNTERS - 1);
+                int cell = base + (counter >>> 4);
+                int shift = shift(counter);
+                long current;
+                long value;
+                do {
+                    current = counters.get(cell);
+                    value = (current >>> shift) & COUNTER_MAX;
+                    if (value == COUNTER_MAX || (delta < 0 && value == 0)) break;
+                } while (!counters.compareAndSet(cell, current, current + ((long) delta << shift)));
+            }
+        }
+
+        // Хеш выбирает блок, а позиции в блоке берутся по 7 бит из второго, независимого хеша.
+        // Позиции с постоянным шагом (двойное хеширование) в блоке из 128 счётчиков у разных ключей
+        // слишком часто совпадают и заметно увеличивают долю ложных срабатываний
+        private int block(long hash) {
+            return (int) Math.floorMod(hash, (long) blocks) * BLOCK_LONGS;
+        }
+
+        private static long nextBits(long bits, int used) {
+            // 64 бит хватает на 9 позиций, дальше хеш перемешивается заново
+            return (used + 1) % 9 == 0 ? mix(bits) : bits >>> 7;
+        }
+
+        private static int shift(int counter) {
+            return (counter & 15) << 2;
+        }
+
+        // FNV-1a по символам и перемешивание splitmix64
+        private static long hash64(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h += 0x9e3779b97f4a7c15L;
+            h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+            h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+            return h ^ (h >>> 31);
+        }
+    }
+}
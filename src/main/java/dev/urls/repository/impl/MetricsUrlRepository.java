@@ -0,0 +1,157 @@
+package dev.urls.repository.impl;
+
+import dev.urls.metrics.MetricsRegistry;
+import dev.urls.metrics.MetricsRegistry.Operation;
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Декоратор, замеряющий операции репозитория ссылок (см. MetricsRegistry).
+// Стоит снаружи кэша и фильтра путей, поэтому видит то же время, что и сервис
+public class MetricsUrlRepository implements UrlRepository {
+    private final UrlRepository delegate;
+    private final Operation findByPath;
+    private final Operation save;
+    private final Operation saveIfAbsent;
+    private final Operation saveAllIfAbsent;
+    private final Operation delete;
+    private final Operation deleteAll;
+    private final Operation updateClicksCounter;
+    private final Operation findUrlsByUserUuid;
+
+    public MetricsUrlRepository(UrlRepository delegate, MetricsRegistry metrics, int sampling) {
+        this.delegate = delegate;
+        this.findByPath = metrics.operation("repository.findByPath", sampling);
+        this.save = metrics.operation("repository.save", 1);
+        this.saveIfAbsent = metrics.operation("repository.saveIfAbsent", 1);
+        this.saveAllIfAbsent = metrics.operation("repository.saveAllIfAbsent", 1);
+        this.delete = metrics.operation("repository.delete", 1);
+        this.deleteAll = metrics.operation("repository.deleteAll", 1);
+        this.updateClicksCounter = metrics.operation("repository.updateClicksCounter", sampling);
+        this.findUrlsByUserUuid = metrics.operation("repository.findUrlsByUserUuid", 1);
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        long start = findByPath.start();
+        boolean found = false;
+        try {
+            Optional<ShortUrl> shortUrl = delegate.findByPath(path);
+            found = shortUrl.isPresent();
+            return shortUrl;
+        } finally {
+            findByPath.stop(start, found);
+        }
+    }
+
+    @Override
+    public long getNextUrlId() {
+        return delegate.getNextUrlId();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return delegate.getNextUrlIds(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        long start = save.start();
+        try {
+            delegate.save(shortUrl);
+        } finally {
+            save.stop(start);
+        }
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        long start = saveIfAbsent.start();
+        boolean found = false;
+        try {
+            boolean saved = delegate.saveIfAbsent(shortUrl);
+            found = saved;
+            return saved;
+        } finally {
+            saveIfAbsent.stop(start, found);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        long start = saveAllIfAbsent.start();
+        boolean found = false;
+        try {
+            List<ShortUrl> rejected = delegate.saveAllIfAbsent(shortUrls);
+            found = rejected.isEmpty();
+            return rejected;
+        } finally {
+            saveAllIfAbsent.stop(start, found);
+        }
+    }
+
+    @Override
+    public void delete(String path) {
+        long start = delete.start();
+        try {
+            delegate.delete(path);
+        } finally {
+            delete.stop(start);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        long start = deleteAll.start();
+        try {
+            return delegate.deleteAll(paths);
+        } finally {
+            deleteAll.stop(start);
+        }
+    }
+
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        long start = updateClicksCounter.start();
+        try {
+            delegate.updateClicksCounter(path, clicksCounter);
+        } finally {
+            updateClicksCounter.stop(start);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        long start = findUrlsByUserUuid.start();
+        try {
+            return delegate.findAllUrlsByUserUuid(uuid);
+        } finally {
+            findUrlsByUserUuid.stop(start);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        long start = findUrlsByUserUuid.start();
+        try {
+            return delegate.findUrlsByUserUuid(uuid, offset, limit);
+        } finally {
+            findUrlsByUserUuid.stop(start);
+        }
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        delegate.forEach(action);
+    }
+}
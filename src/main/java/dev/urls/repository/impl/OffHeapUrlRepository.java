@@ -0,0 +1,577 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+// Компактное хранилище ссылок вне кучи. Каждая ссылка — запись фиксированной длины (RECORD_SIZE байт)
+// в прямых ByteBuffer: id, владелец двумя long, время в epoch-миллисекундах, счётчики в int и путь в байтах.
+// Оригинальные ссылки лежат подряд в общей «арене» байтов, индекс путей — массив int с открытой адресацией.
+// Место старых копий ссылок в арене освобождается уплотнением, когда мусора становится больше живых данных.
+// Объект ShortUrl создаётся только при выдаче наружу; изменения возвращаются через save.
+public class OffHeapUrlRepository implements UrlRepository {
+    // Раскладка записи
+    private static final int ID = 0;
+    private static final int OWNER_MSB = 8;
+    private static final int OWNER_LSB = 16;
+    private static final int CREATED_AT = 24;
+    private static final int EXPIRES_AT = 32;
+    private static final int URL_OFFSET = 40;
+    private static final int URL_LENGTH = 48;
+    private static final int CLICKS_LIMIT = 52;
+    private static final int CLICKS_COUNTER = 56;
+    private static final int NEXT_BY_OWNER = 60;
+    private static final int PREV_BY_OWNER = 64;
+    private static final int FLAGS = 68;
+    private static final int PATH_LENGTH = 69;
+    private static final int PATH = 70;
+    private static final int MAX_PATH_BYTES = 16;
+    private static final int RECORD_SIZE = 88;
+
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+    private static final int URL_CHUNK_SIZE = 16 << 20;
+    private static final byte FLAG_USED = 1;
+    private static final byte FLAG_ACTIVE = 2;
+    private static final int NO_SLOT = -1;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    // Массивы заменяются целиком при росте, чтобы оптимистичное чтение видело согласованную ссылку
+    private volatile ByteBuffer[] records = new ByteBuffer[0];
+    private volatile ByteBuffer[] urlChunks = new ByteBuffer[0];
+    private int urlChunkPosition = URL_CHUNK_SIZE;
+    // Байты арены, занятые текущими копиями ссылок, и байты старых копий, ждущие уплотнения
+    private long urlBytesLive;
+    private long urlBytesGarbage;
+    // Индекс путей: номер записи + 1, EMPTY или TOMBSTONE
+    private volatile int[] pathTable = new int[1024];
+    private int pathTableOccupied;
+    private int nextSlot;
+    private int[] freeSlots = new int[64];
+    private int freeSlotsCount;
+    // Ссылки владельца связаны в двусвязный список через поля записи, в куче только голова и хвост
+    private final Map<UUID, int[]> ownerLists = new HashMap<>();
+    private final AtomicLong nextUrlId = new AtomicLong();
+    // Поиск по пути идёт без блокировки (оптимистичное чтение с проверкой версии), остальное — под блокировкой
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public long getNextUrlId() {
+        return nextUrlId.getAndIncrement();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return nextUrlId.getAndAdd(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        reserveId(shortUrl.getId());
+        byte[] path = pathBytes(shortUrl.getShortPath());
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(path);
+            if (slot == NO_SLOT) {
+                insert(shortUrl, path);
+            } else {
+                write(slot, shortUrl);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        reserveId(shortUrl.getId());
+        byte[] path = pathBytes(shortUrl.getShortPath());
+        long stamp = lock.writeLock();
+        try {
+            if (findSlot(path) != NO_SLOT) return false;
+            insert(shortUrl, path);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Вся пачка вставляется под одной блокировкой записи; пути кодируются до её взятия
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        byte[][] paths = new byte[shortUrls.size()][];
+        for (int i = 0; i < paths.length; i++) {
+            ShortUrl shortUrl = shortUrls.get(i);
+            reserveId(shortUrl.getId());
+            paths[i] = pathBytes(shortUrl.getShortPath());
+        }
+        List<ShortUrl> rejected = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < paths.length; i++) {
+                if (findSlot(paths[i]) != NO_SLOT) {
+                    rejected.add(shortUrls.get(i));
+                } else {
+                    insert(shortUrls.get(i), paths[i]);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return rejected;
+    }
+
+    @Override
+    public void delete(String path) {
+        byte[] bytes = lookupBytes(path);
+        if (bytes == null) return;
+        long stamp = lock.writeLock();
+        try {
+            int index = findTableIndex(pathTable, bytes);
+            if (index >= 0) remove(index);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        List<byte[]> encoded = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            byte[] bytes = lookupBytes(path);
+            if (bytes != null) encoded.add(bytes);
+        }
+        if (encoded.isEmpty()) return List.of();
+        List<ShortUrl> deleted = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            for (byte[] path : encoded) {
+                int index = findTableIndex(pathTable, path);
+                if (index < 0) continue;
+                deleted.add(read(pathTable[index] - 1));
+                remove(index);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return deleted;
+    }
+
+    // Запись int в уже существующую запись: достаточно блокировки чтения, она исключает только удаление
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        byte[] bytes = lookupBytes(path);
+        if (bytes == null) return;
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(bytes);
+            if (slot != NO_SLOT) chunk(slot).putInt(base(slot) + CLICKS_COUNTER, clicksCounter);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        byte[] bytes = lookupBytes(path);
+        if (bytes == null) return Optional.empty();
+        // Без блокировки: CAS при каждом чтении не даёт процессору совмещать промахи кэша соседних запросов.
+        // Если за время чтения была запись, данные могли быть несогласованными — тогда читаем повторно под блокировкой
+        long optimistic = lock.tryOptimisticRead();
+        if (optimistic != 0) {
+            try {
+                int slot = findSlot(bytes);
+                ShortUrl shortUrl = slot == NO_SLOT ? null : read(slot);
+                if (lock.validate(optimistic)) return Optional.ofNullable(shortUrl);
+            } catch (RuntimeException ignored) {
+                // Запись изменилась во время чтения
+            }
+        }
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(bytes);
+            return slot == NO_SLOT ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return findUrlsByUserUuid(uuid, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        long stamp = lock.readLock();
+        try {
+            int[] list = ownerLists.get(uuid);
+            if (list == null) return List.of();
+            List<ShortUrl> result = new ArrayList<>(Math.min(limit, list[2]));
+            int slot = list[0];
+            for (int skipped = 0; slot != NO_SLOT && skipped < offset; skipped++) {
+                slot = chunk(slot).getInt(base(slot) + NEXT_BY_OWNER);
+            }
+            while (slot != NO_SLOT && result.size() < limit) {
+                result.add(read(slot));
+                slot = chunk(slot).getInt(base(slot) + NEXT_BY_OWNER);
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long count() {
+        long stamp = lock.readLock();
+        try {
+            return nextSlot - freeSlotsCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getUrlArenaAllocatedBytes() {
+        return (long) urlChunks.length * URL_CHUNK_SIZE;
+    }
+
+    public long getUrlArenaLiveBytes() {
+        long stamp = lock.readLock();
+        try {
+            return urlBytesLive;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getUrlArenaGarbageBytes() {
+        long stamp = lock.readLock();
+        try {
+            return urlBytesGarbage;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Обход порциями, чтобы долгий обход (например, запись снимка) не блокировал запись надолго
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        int batch = 4096;
+        List<ShortUrl> buffer = new ArrayList<>(batch);
+        for (int from = 0; ; from += batch) {
+            long stamp = lock.readLock();
+            try {
+                if (from >= nextSlot) return;
+                int to = Math.min(from + batch, nextSlot);
+                for (int slot = from; slot < to; slot++) {
+                    if ((chunk(slot).get(base(slot) + FLAGS) & FLAG_USED) != 0) buffer.add(read(slot));
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            buffer.forEach(action);
+            buffer.clear();
+        }
+    }
+
+    private void insert(ShortUrl shortUrl, byte[] path) {
+        int slot = allocateSlot();
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        chunk.put(base + PATH_LENGTH, (byte) path.length);
+        chunk.put(base + PATH, path);
+        chunk.putLong(base + URL_OFFSET, -1);
+        write(slot, shortUrl);
+        linkOwner(slot, shortUrl.getUserUuid());
+        addToTable(slot, path);
+    }
+
+    private void write(int slot, ShortUrl shortUrl) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        UUID owner = shortUrl.getUserUuid();
+        boolean ownerChanged = (chunk.get(base + FLAGS) & FLAG_USED) != 0
+                && (chunk.getLong(base + OWNER_MSB) != owner.getMostSignificantBits()
+                || chunk.getLong(base + OWNER_LSB) != owner.getLeastSignificantBits());
+        if (ownerChanged) unlinkOwner(slot);
+
+        chunk.putLong(base + ID, shortUrl.getId());
+        chunk.putLong(base + OWNER_MSB, owner.getMostSignificantBits());
+        chunk.putLong(base + OWNER_LSB, owner.getLeastSignificantBits());
+        chunk.putLong(base + CREATED_AT, toMillis(shortUrl.getCreatedAt()));
+        chunk.putLong(base + EXPIRES_AT, toMillis(shortUrl.getExpiresAt()));
+        writeUrl(chunk, base, shortUrl.getOriginalUrl());
+        chunk.putInt(base + CLICKS_LIMIT, shortUrl.getClicksLimit());
+        chunk.putInt(base + CLICKS_COUNTER, shortUrl.getClicksCounter());
+        chunk.put(base + FLAGS, (byte) (FLAG_USED | (shortUrl.isActive() ? FLAG_ACTIVE : 0)));
+
+        if (ownerChanged) linkOwner(slot, owner);
+        // Только после пометки записи занятой, иначе уплотнение пропустило бы её ссылку
+        compactUrlsIfNeeded();
+    }
+
+    private ShortUrl read(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        byte[] path = new byte[chunk.get(base + PATH_LENGTH)];
+        chunk.get(base + PATH, path);
+        int urlLength = chunk.getInt(base + URL_LENGTH);
+        if (urlLength < 0 || urlLength > URL_CHUNK_SIZE) throw new IllegalStateException("Повреждённая запись " + slot);
+        byte[] url = new byte[urlLength];
+        long urlOffset = chunk.getLong(base + URL_OFFSET);
+        urlChunks[(int) (urlOffset / URL_CHUNK_SIZE)].get((int) (urlOffset % URL_CHUNK_SIZE), url);
+        return ShortUrl.builder()
+                .id(chunk.getLong(base + ID))
+                .shortPath(new String(path, StandardCharsets.UTF_8))
+                .originalUrl(new String(url, StandardCharsets.UTF_8))
+                .userUuid(new UUID(chunk.getLong(base + OWNER_MSB), chunk.getLong(base + OWNER_LSB)))
+                .createdAt(toTime(chunk.getLong(base + CREATED_AT)))
+                .expiresAt(toTime(chunk.getLong(base + EXPIRES_AT)))
+                .clicksLimit(chunk.getInt(base + CLICKS_LIMIT))
+                .clicksCounter(chunk.getInt(base + CLICKS_COUNTER))
+                .isActive((chunk.get(base + FLAGS) & FLAG_ACTIVE) != 0)
+                .build();
+    }
+
+    // Оригинальная ссылка дописывается в арену только если изменилась; старая копия становится мусором
+    private void writeUrl(ByteBuffer chunk, int base, String originalUrl) {
+        byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+        long offset = chunk.getLong(base + URL_OFFSET);
+        if (offset >= 0 && chunk.getInt(base + URL_LENGTH) == url.length) {
+            byte[] stored = new byte[url.length];
+            urlChunks[(int) (offset / URL_CHUNK_SIZE)].get((int) (offset % URL_CHUNK_SIZE), stored);
+            if (Arrays.equals(stored, url)) return;
+        }
+        if (url.length > URL_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Слишком длинная ссылка: " + url.length + " байт");
+        }
+        if (offset >= 0) releaseUrl(chunk.getInt(base + URL_LENGTH));
+        ByteBuffer[] chunks = urlChunks;
+        if (urlChunkPosition + url.length > URL_CHUNK_SIZE) {
+            chunks = grow(chunks, URL_CHUNK_SIZE);
+            urlChunkPosition = 0;
+        }
+        appendUrl(chunks, chunk, base, url);
+        urlChunks = chunks;
+        urlBytesLive += url.length;
+    }
+
+    private void appendUrl(ByteBuffer[] chunks, ByteBuffer chunk, int base, byte[] url) {
+        int chunkIndex = chunks.length - 1;
+        chunks[chunkIndex].put(urlChunkPosition, url);
+        chunk.putLong(base + URL_OFFSET, (long) chunkIndex * URL_CHUNK_SIZE + urlChunkPosition);
+        chunk.putInt(base + URL_LENGTH, url.length);
+        urlChunkPosition += url.length;
+    }
+
+    private void releaseUrl(int length) {
+        urlBytesLive -= length;
+        urlBytesGarbage += length;
+    }
+
+    // Уплотнение под блокировкой записи: живые ссылки переписываются в новые куски арены, старые куски
+    // освобождает сборщик мусора. Запускается, когда мусор занимает хотя бы кусок и больше живых данных,
+    // поэтому копирование окупается и в среднем стоит не больше самих записей
+    private void compactUrlsIfNeeded() {
+        if (urlBytesGarbage < URL_CHUNK_SIZE || urlBytesGarbage <= urlBytesLive) return;
+        ByteBuffer[] old = urlChunks;
+        ByteBuffer[] chunks = new ByteBuffer[0];
+        urlChunkPosition = URL_CHUNK_SIZE;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int base = base(slot);
+            if ((chunk.get(base + FLAGS) & FLAG_USED) == 0) continue;
+            long offset = chunk.getLong(base + URL_OFFSET);
+            if (offset < 0) continue;
+            byte[] url = new byte[chunk.getInt(base + URL_LENGTH)];
+            old[(int) (offset / URL_CHUNK_SIZE)].get((int) (offset % URL_CHUNK_SIZE), url);
+            if (urlChunkPosition + url.length > URL_CHUNK_SIZE) {
+                chunks = grow(chunks, URL_CHUNK_SIZE);
+                urlChunkPosition = 0;
+            }
+            appendUrl(chunks, chunk, base, url);
+        }
+        urlChunks = chunks;
+        urlBytesGarbage = 0;
+    }
+
+    // Вызывается под блокировкой записи
+    private void remove(int tableIndex) {
+        int slot = pathTable[tableIndex] - 1;
+        pathTable[tableIndex] = TOMBSTONE;
+        unlinkOwner(slot);
+        chunk(slot).put(base(slot) + FLAGS, (byte) 0);
+        if (freeSlotsCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeSlotsCount * 2);
+        freeSlots[freeSlotsCount++] = slot;
+        releaseUrl(chunk(slot).getInt(base(slot) + URL_LENGTH));
+        compactUrlsIfNeeded();
+    }
+
+    private int allocateSlot() {
+        if (freeSlotsCount > 0) return freeSlots[--freeSlotsCount];
+        if (nextSlot == records.length * RECORDS_PER_CHUNK) {
+            records = grow(records, RECORDS_PER_CHUNK * RECORD_SIZE);
+        }
+        return nextSlot++;
+    }
+
+    private void linkOwner(int slot, UUID owner) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        int[] list = ownerLists.computeIfAbsent(owner, uuid -> new int[]{NO_SLOT, NO_SLOT, 0});
+        chunk.putInt(base + NEXT_BY_OWNER, NO_SLOT);
+        chunk.putInt(base + PREV_BY_OWNER, list[1]);
+        if (list[1] != NO_SLOT) {
+            chunk(list[1]).putInt(base(list[1]) + NEXT_BY_OWNER, slot);
+        } else {
+            list[0] = slot;
+        }
+        list[1] = slot;
+        list[2]++;
+    }
+
+    private void unlinkOwner(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        UUID owner = new UUID(chunk.getLong(base + OWNER_MSB), chunk.getLong(base + OWNER_LSB));
+        int[] list = ownerLists.get(owner);
+        if (list == null) return;
+        int prev = chunk.getInt(base + PREV_BY_OWNER);
+        int next = chunk.getInt(base + NEXT_BY_OWNER);
+        if (prev != NO_SLOT) chunk(prev).putInt(base(prev) + NEXT_BY_OWNER, next);
+        else list[0] = next;
+        if (next != NO_SLOT) chunk(next).putInt(base(next) + PREV_BY_OWNER, prev);
+        else list[1] = prev;
+        if (--list[2] == 0) ownerLists.remove(owner);
+    }
+
+    private int findSlot(byte[] path) {
+        int[] table = pathTable;
+        int index = findTableIndex(table, path);
+        return index < 0 ? NO_SLOT : table[index] - 1;
+    }
+
+    private int findTableIndex(int[] table, byte[] path) {
+        int mask = table.length - 1;
+        for (int i = hash(path) & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == EMPTY) return -1;
+            if (entry != TOMBSTONE && pathEquals(entry - 1, path)) return i;
+        }
+    }
+
+    private void addToTable(int slot, byte[] path) {
+        // Заполненность вместе с «надгробиями» держим не выше половины
+        if ((pathTableOccupied + 1) * 2 > pathTable.length) rehash();
+        int[] table = pathTable;
+        int mask = table.length - 1;
+        int i = hash(path) & mask;
+        while (table[i] != EMPTY && table[i] != TOMBSTONE) i = (i + 1) & mask;
+        if (table[i] == EMPTY) pathTableOccupied++;
+        table[i] = slot + 1;
+    }
+
+    private void rehash() {
+        int[] old = pathTable;
+        int live = 0;
+        for (int entry : old) {
+            if (entry != EMPTY && entry != TOMBSTONE) live++;
+        }
+        // Новая таблица заполняется целиком и только потом публикуется
+        int capacity = Integer.highestOneBit(Math.max(16, live * 4) - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry == EMPTY || entry == TOMBSTONE) continue;
+            int i = recordPathHash(entry - 1) & mask;
+            while (table[i] != EMPTY) i = (i + 1) & mask;
+            table[i] = entry;
+        }
+        pathTable = table;
+        pathTableOccupied = live;
+    }
+
+    private boolean pathEquals(int slot, byte[] path) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        if (chunk.get(base + PATH_LENGTH) != path.length) return false;
+        for (int i = 0; i < path.length; i++) {
+            if (chunk.get(base + PATH + i) != path[i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(byte[] path) {
+        int h = 0x811c9dc5;
+        for (byte b : path) h = (h ^ b) * 0x01000193;
+        return mix(h);
+    }
+
+    private int recordPathHash(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        int h = 0x811c9dc5;
+        for (int i = 0, length = chunk.get(base + PATH_LENGTH); i < length; i++) h = (h ^ chunk.get(base + PATH + i)) * 0x01000193;
+        return mix(h);
+    }
+
+    // Перемешивание старших бит в младшие: похожие пути иначе дают длинные цепочки в таблице
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return records[slot / RECORDS_PER_CHUNK];
+    }
+
+    private static ByteBuffer[] grow(ByteBuffer[] chunks, int chunkSize) {
+        ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+        grown[chunks.length] = ByteBuffer.allocateDirect(chunkSize);
+        return grown;
+    }
+
+    private static int base(int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    // Путь длиннее MAX_PATH_BYTES сохранить нельзя, значит и искать его незачем: null вместо исключения,
+    // чтобы переход по такому пути получал 404, а не ошибку сервера
+    private static byte[] lookupBytes(String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_PATH_BYTES ? bytes : null;
+    }
+
+    private static byte[] pathBytes(String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_PATH_BYTES) {
+            throw new IllegalArgumentException("Короткий путь длиннее " + MAX_PATH_BYTES + " байт: " + path);
+        }
+        return bytes;
+    }
+
+    private void reserveId(long id) {
+        if (id >= nextUrlId.get()) {
+            nextUrlId.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000 : NO_TIME;
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        if (millis == NO_TIME) return null;
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
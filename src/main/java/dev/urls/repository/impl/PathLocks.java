@@ -0,0 +1,44 @@
+package dev.urls.repository.impl;
+
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Полосатая блокировка по коротким путям для декораторов репозитория: изменения одного пути сериализуются.
+// Пачка берёт блокировки всех своих полос по возрастанию номера, поэтому пачки и одиночные изменения
+// не блокируют друг друга навечно. ReentrantLock, а не synchronized: под блокировкой идёт запись в журнал,
+// и виртуальный поток HTTP-запроса, ждущий в synchronized, занимал бы поток-носитель на всё ожидание
+final class PathLocks {
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    PathLocks() {
+        for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+    }
+
+    Lock lockFor(String path) {
+        return locks[stripe(path)];
+    }
+
+    <T> T withLocks(Collection<String> paths, Supplier<T> action) {
+        boolean[] used = new boolean[STRIPES];
+        for (String path : paths) used[stripe(path)] = true;
+        int locked = 0;
+        try {
+            for (; locked < STRIPES; locked++) {
+                if (used[locked]) locks[locked].lock();
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                if (used[i]) locks[i].unlock();
+            }
+        }
+    }
+
+    private static int stripe(String path) {
+        return (path.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
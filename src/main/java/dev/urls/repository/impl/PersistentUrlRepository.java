@@ -0,0 +1,160 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+import dev.urls.storage.RecordCodec;
+import dev.urls.storage.WalRecordType;
+import dev.urls.storage.WriteAheadLog;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+// Декоратор, записывающий изменения in-memory репозитория в журнал.
+// Создание, изменение и удаление ждут сброса своей пачки на диск, клики пишутся без ожидания.
+// Изменение и постановка в журнал делаются под блокировкой пути, чтобы порядок записей одного пути в журнале
+// совпадал с порядком в памяти (иначе восстановление могло бы вернуть удалённую ссылку или старый счётчик).
+// Сброса на диск ждём уже без блокировки.
+public class PersistentUrlRepository implements UrlRepository {
+    private final UrlRepository delegate;
+    private final WriteAheadLog wal;
+    private final PathLocks locks = new PathLocks();
+
+    public PersistentUrlRepository(UrlRepository delegate, WriteAheadLog wal) {
+        this.delegate = delegate;
+        this.wal = wal;
+    }
+
+    @Override
+    public long getNextUrlId() {
+        return delegate.getNextUrlId();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return delegate.getNextUrlIds(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        CompletableFuture<Void> durable;
+        Lock lock = locks.lockFor(shortUrl.getShortPath());
+        lock.lock();
+        try {
+            delegate.save(shortUrl);
+            durable = wal.appendDurable(WalRecordType.URL_SAVE, shortUrl);
+        } finally {
+            lock.unlock();
+        }
+        WriteAheadLog.await(durable);
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        CompletableFuture<Void> durable;
+        Lock lock = locks.lockFor(shortUrl.getShortPath());
+        lock.lock();
+        try {
+            if (!delegate.saveIfAbsent(shortUrl)) return false;
+            durable = wal.appendDurable(WalRecordType.URL_SAVE, shortUrl);
+        } finally {
+            lock.unlock();
+        }
+        WriteAheadLog.await(durable);
+        return true;
+    }
+
+    // Вся пачка — одна запись журнала и одно ожидание сброса на диск вместо ожидания на каждую ссылку
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        AtomicReference<CompletableFuture<Void>> durable = new AtomicReference<>();
+        List<ShortUrl> rejected = locks.withLocks(shortUrls.stream().map(ShortUrl::getShortPath).toList(), () -> {
+            List<ShortUrl> notSaved = delegate.saveAllIfAbsent(shortUrls);
+            List<ShortUrl> saved = shortUrls;
+            if (!notSaved.isEmpty()) {
+                Set<ShortUrl> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+                skipped.addAll(notSaved);
+                saved = shortUrls.stream().filter(shortUrl -> !skipped.contains(shortUrl)).toList();
+            }
+            if (!saved.isEmpty()) durable.set(wal.appendDurable(WalRecordType.URL_SAVE_BATCH, saved));
+            return notSaved;
+        });
+        if (durable.get() != null) WriteAheadLog.await(durable.get());
+        return rejected;
+    }
+
+    @Override
+    public void delete(String path) {
+        CompletableFuture<Void> durable;
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            if (delegate.findByPath(path).isEmpty()) return;
+            delegate.delete(path);
+            durable = wal.appendDurable(WalRecordType.URL_DELETE, path);
+        } finally {
+            lock.unlock();
+        }
+        WriteAheadLog.await(durable);
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        AtomicReference<CompletableFuture<Void>> durable = new AtomicReference<>();
+        List<ShortUrl> deleted = locks.withLocks(paths, () -> {
+            List<ShortUrl> removed = delegate.deleteAll(paths);
+            if (!removed.isEmpty()) {
+                durable.set(wal.appendDurable(WalRecordType.URL_DELETE_BATCH,
+                        removed.stream().map(ShortUrl::getShortPath).toList()));
+            }
+            return removed;
+        });
+        if (durable.get() != null) WriteAheadLog.await(durable.get());
+        return deleted;
+    }
+
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            delegate.updateClicksCounter(path, clicksCounter);
+            wal.append(WalRecordType.URL_CLICKS, new RecordCodec.ClicksUpdate(path, clicksCounter));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        return delegate.findByPath(path);
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return delegate.findAllUrlsByUserUuid(uuid);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        return delegate.findUrlsByUserUuid(uuid, offset, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        delegate.forEach(action);
+    }
+}
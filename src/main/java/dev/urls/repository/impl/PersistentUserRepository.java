@@ -0,0 +1,48 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.User;
+import dev.urls.repository.UserRepository;
+import dev.urls.storage.WalRecordType;
+import dev.urls.storage.WriteAheadLog;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public class PersistentUserRepository implements UserRepository {
+    private final UserRepository delegate;
+    private final WriteAheadLog wal;
+
+    public PersistentUserRepository(UserRepository delegate, WriteAheadLog wal) {
+        this.delegate = delegate;
+        this.wal = wal;
+    }
+
+    @Override
+    public void save(User user) {
+        delegate.save(user);
+        wal.appendAndWait(WalRecordType.USER_SAVE, user);
+    }
+
+    @Override
+    public boolean saveIfAbsent(User user) {
+        if (!delegate.saveIfAbsent(user)) return false;
+        wal.appendAndWait(WalRecordType.USER_SAVE, user);
+        return true;
+    }
+
+    @Override
+    public Optional<User> findByUuid(UUID uuid) {
+        return delegate.findByUuid(uuid);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return delegate.findByUsername(username);
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        delegate.forEach(action);
+    }
+}
@@ -0,0 +1,145 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.replication.ReplicationLog;
+import dev.urls.repository.UrlRepository;
+import dev.urls.storage.RecordCodec;
+import dev.urls.storage.WalRecordType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+// Декоратор ведущего узла: после изменения репозитория добавляет ту же запись в журнал репликации.
+// Запись не ждёт доставки на реплики: они догоняют асинхронно.
+// Изменение и запись в журнал делаются под блокировкой пути: иначе два писателя одного пути (например, сброс кликов
+// и деактивация по лимиту) могли бы применить изменения в одном порядке, а записать в журнал в другом,
+// и реплики до следующего снимка хранили бы другое состояние.
+public class ReplicatedUrlRepository implements UrlRepository {
+    private final UrlRepository delegate;
+    private final ReplicationLog log;
+    private final PathLocks locks = new PathLocks();
+
+    public ReplicatedUrlRepository(UrlRepository delegate, ReplicationLog log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    @Override
+    public long getNextUrlId() {
+        return delegate.getNextUrlId();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return delegate.getNextUrlIds(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        Lock lock = locks.lockFor(shortUrl.getShortPath());
+        lock.lock();
+        try {
+            delegate.save(shortUrl);
+            log.append(WalRecordType.URL_SAVE, shortUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        Lock lock = locks.lockFor(shortUrl.getShortPath());
+        lock.lock();
+        try {
+            if (!delegate.saveIfAbsent(shortUrl)) return false;
+            log.append(WalRecordType.URL_SAVE, shortUrl);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вся пачка — одна запись журнала
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        return locks.withLocks(shortUrls.stream().map(ShortUrl::getShortPath).toList(), () -> {
+            List<ShortUrl> rejected = delegate.saveAllIfAbsent(shortUrls);
+            List<ShortUrl> saved = shortUrls;
+            if (!rejected.isEmpty()) {
+                Set<ShortUrl> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+                skipped.addAll(rejected);
+                saved = shortUrls.stream().filter(shortUrl -> !skipped.contains(shortUrl)).toList();
+            }
+            if (!saved.isEmpty()) log.append(WalRecordType.URL_SAVE_BATCH, saved);
+            return rejected;
+        });
+    }
+
+    @Override
+    public void delete(String path) {
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            if (delegate.findByPath(path).isEmpty()) return;
+            delegate.delete(path);
+            log.append(WalRecordType.URL_DELETE, path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        return locks.withLocks(paths, () -> {
+            List<ShortUrl> deleted = delegate.deleteAll(paths);
+            if (!deleted.isEmpty()) {
+                log.append(WalRecordType.URL_DELETE_BATCH, deleted.stream().map(ShortUrl::getShortPath).toList());
+            }
+            return deleted;
+        });
+    }
+
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        Lock lock = locks.lockFor(path);
+        lock.lock();
+        try {
+            delegate.updateClicksCounter(path, clicksCounter);
+            log.append(WalRecordType.URL_CLICKS, new RecordCodec.ClicksUpdate(path, clicksCounter));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        return delegate.findByPath(path);
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return delegate.findAllUrlsByUserUuid(uuid);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        return delegate.findUrlsByUserUuid(uuid, offset, limit);
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        delegate.forEach(action);
+    }
+}
@@ -0,0 +1,49 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.User;
+import dev.urls.replication.ReplicationLog;
+import dev.urls.repository.UserRepository;
+import dev.urls.storage.WalRecordType;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Декоратор ведущего узла: сохранённые пользователи попадают в журнал репликации
+public class ReplicatedUserRepository implements UserRepository {
+    private final UserRepository delegate;
+    private final ReplicationLog log;
+
+    public ReplicatedUserRepository(UserRepository delegate, ReplicationLog log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    @Override
+    public void save(User user) {
+        delegate.save(user);
+        log.append(WalRecordType.USER_SAVE, user);
+    }
+
+    @Override
+    public boolean saveIfAbsent(User user) {
+        if (!delegate.saveIfAbsent(user)) return false;
+        log.append(WalRecordType.USER_SAVE, user);
+        return true;
+    }
+
+    @Override
+    public Optional<User> findByUuid(UUID uuid) {
+        return delegate.findByUuid(uuid);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return delegate.findByUsername(username);
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        delegate.forEach(action);
+    }
+}
@@ -0,0 +1,217 @@
+package dev.urls.repository.impl;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.repository.UrlRepository;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Хранилище, разбитое на независимые сегменты по хэшу короткого пути.
+// У каждого сегмента один поток-писатель: все изменения сегмента выполняются по очереди в этом потоке,
+// поэтому писатели разных сегментов не мешают друг другу, а внутри сегмента нет борьбы за индексы.
+// Чтение идёт напрямую из индексов сегмента без очереди и блокировок.
+//
+// id выдаются диапазонами по ID_RANGE: у каждого сегмента свой текущий диапазон, а общий счётчик
+// трогается один раз на диапазон. Поэтому id уникальны, но по ним нельзя точно восстановить порядок создания
+// ссылок из разных потоков.
+public class ShardedUrlRepository implements UrlRepository, AutoCloseable {
+    private static final int ID_RANGE = 1024;
+
+    private final Shard[] shards;
+    // Начало следующего свободного диапазона id
+    private final AtomicLong nextRangeStart = new AtomicLong();
+
+    public ShardedUrlRepository(int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("Число сегментов должно быть положительным: " + shardCount);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) shards[i] = new Shard(i);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // Диапазон id берётся у сегмента, закреплённого за потоком, чтобы потоки не делили один счётчик
+    @Override
+    public long getNextUrlId() {
+        return shards[(int) (Thread.currentThread().threadId() % shards.length)].nextId();
+    }
+
+    // Подряд идущие id выдаются из общего счётчика в обход диапазонов сегментов
+    @Override
+    public long getNextUrlIds(int count) {
+        return nextRangeStart.getAndAdd(count);
+    }
+
+    @Override
+    public void save(ShortUrl shortUrl) {
+        reserveId(shortUrl.getId());
+        Shard shard = shardOf(shortUrl.getShortPath());
+        await(shard.writer.submit(() -> shard.store.save(shortUrl)));
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        Shard shard = shardOf(shortUrl.getShortPath());
+        boolean saved = await(shard.writer.submit(() -> shard.store.saveIfAbsent(shortUrl)));
+        if (saved) reserveId(shortUrl.getId());
+        return saved;
+    }
+
+    // Пачка делится по сегментам, и сегменты сохраняют свои части одновременно
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        List<List<ShortUrl>> parts = partition(shortUrls, ShortUrl::getShortPath);
+        List<Future<List<ShortUrl>>> results = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<ShortUrl> part = parts.get(i);
+            if (part.isEmpty()) continue;
+            Shard shard = shards[i];
+            results.add(shard.writer.submit(() -> shard.store.saveAllIfAbsent(part)));
+        }
+        List<ShortUrl> rejected = new ArrayList<>();
+        for (Future<List<ShortUrl>> result : results) rejected.addAll(await(result));
+        long maxId = -1;
+        Set<ShortUrl> rejectedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        rejectedSet.addAll(rejected);
+        for (ShortUrl shortUrl : shortUrls) {
+            if (!rejectedSet.contains(shortUrl)) maxId = Math.max(maxId, shortUrl.getId());
+        }
+        if (maxId >= 0) reserveId(maxId);
+        return rejected;
+    }
+
+    @Override
+    public void delete(String path) {
+        Shard shard = shardOf(path);
+        await(shard.writer.submit(() -> shard.store.delete(path)));
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        List<List<String>> parts = partition(paths, path -> path);
+        List<Future<List<ShortUrl>>> results = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<String> part = parts.get(i);
+            if (part.isEmpty()) continue;
+            Shard shard = shards[i];
+            results.add(shard.writer.submit(() -> shard.store.deleteAll(part)));
+        }
+        List<ShortUrl> deleted = new ArrayList<>();
+        for (Future<List<ShortUrl>> result : results) deleted.addAll(await(result));
+        return deleted;
+    }
+
+    // Счётчик кликов меняется в самом объекте ссылки и не затрагивает индексы, поэтому без очереди писателя
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        shardOf(path).store.updateClicksCounter(path, clicksCounter);
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String path) {
+        return shardOf(path).store.findByPath(path);
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUserUuid(UUID uuid) {
+        return findUrlsByUserUuid(uuid, 0, Integer.MAX_VALUE);
+    }
+
+    // Ссылки владельца лежат во всех сегментах: сегменты опрашиваются параллельно,
+    // из каждого берётся не больше offset + limit первых ссылок, результат сливается по id
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID uuid, int offset, int limit) {
+        if (shards.length == 1) return shards[0].store.findUrlsByUserUuid(uuid, offset, limit);
+        int perShard = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        return Arrays.stream(shards)
+                .parallel()
+                .flatMap(shard -> shard.store.findUrlsByUserUuid(uuid, 0, perShard).stream())
+                .sorted(Comparator.comparingLong(ShortUrl::getId))
+                .skip(offset)
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (Shard shard : shards) count += shard.store.count();
+        return count;
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        for (Shard shard : shards) shard.store.forEach(action);
+    }
+
+    // Останавливает потоки-писатели; уже поставленные в очередь изменения выполняются
+    @Override
+    public void close() {
+        for (Shard shard : shards) shard.writer.shutdown();
+    }
+
+    private Shard shardOf(String path) {
+        // Перемешиваем хэш, чтобы близкие пути (например, из режима sequence) расходились по сегментам
+        int hash = path.hashCode() * 0x9E3779B9;
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private <T> List<List<T>> partition(Collection<T> items, Function<T, String> path) {
+        List<List<T>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) parts.add(new ArrayList<>());
+        for (T item : items) parts.get(shardOf(path.apply(item)).index).add(item);
+        return parts;
+    }
+
+    // Ссылки, восстановленные из хранилища, не должны получить повторно уже выданные id
+    private void reserveId(long id) {
+        if (id >= nextRangeStart.get()) {
+            nextRangeStart.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private final class Shard {
+        final int index;
+        final UrlRepositoryImpl store = new UrlRepositoryImpl();
+        final ExecutorService writer;
+        // Текущий диапазон id сегмента: [nextId, rangeEnd)
+        private long nextId;
+        private long rangeEnd;
+
+        Shard(int index) {
+            this.index = index;
+            this.writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "url-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        synchronized long nextId() {
+            if (nextId == rangeEnd) {
+                nextId = nextRangeStart.getAndAdd(ID_RANGE);
+                rangeEnd = nextId + ID_RANGE;
+            }
+            return nextId++;
+        }
+    }
+}
@@ -4,42 +4,151 @@ import dev.urls.model.ShortUrl;
 import dev.urls.repository.UrlRepository;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+// Потокобезопасное хранилище: все индексы на ConcurrentHashMap, id выдаются атомарно
 public class UrlRepositoryImpl implements UrlRepository {
-    private final Map<Long, ShortUrl> urlsById = new HashMap<>();
-    private long nextUrlId = 0;
+    private final Map<Long, ShortUrl> urlsById = new ConcurrentHashMap<>();
+    // Вторичный индекс по короткому пути, чтобы поиск по ссылке не требовал обхода всех записей
+    private final ConcurrentHashMap<String, ShortUrl> urlsByPath = new ConcurrentHashMap<>();
+    // Индекс владельца: id ссылок пользователя в порядке создания
+    private final ConcurrentHashMap<UUID, Set<Long>> urlIdsByOwner = new ConcurrentHashMap<>();
+    private final AtomicLong nextUrlId = new AtomicLong();
 
     @Override
     public long getNextUrlId() {
-        return nextUrlId++;
+        return nextUrlId.getAndIncrement();
+    }
+
+    @Override
+    public long getNextUrlIds(int count) {
+        return nextUrlId.getAndAdd(count);
     }
 
     @Override
     public void save(ShortUrl shortUrl) {
+        reserveId(shortUrl.getId());
+        ShortUrl previous = urlsById.put(shortUrl.getId(), shortUrl);
+        if (previous != null) {
+            if (!previous.getShortPath().equals(shortUrl.getShortPath())) {
+                urlsByPath.remove(previous.getShortPath(), previous);
+            }
+            if (!previous.getUserUuid().equals(shortUrl.getUserUuid())) {
+                removeFromOwnerIndex(previous);
+            }
+        }
+        urlsByPath.put(shortUrl.getShortPath(), shortUrl);
+        addToOwnerIndex(shortUrl);
+    }
+
+    @Override
+    public boolean saveIfAbsent(ShortUrl shortUrl) {
+        // Путь резервируется атомарно, поэтому два потока не получат одну и ту же короткую ссылку
+        if (urlsByPath.putIfAbsent(shortUrl.getShortPath(), shortUrl) != null) {
+            return false;
+        }
+        reserveId(shortUrl.getId());
         urlsById.put(shortUrl.getId(), shortUrl);
+        addToOwnerIndex(shortUrl);
+        return true;
+    }
+
+    // Индексы на ConcurrentHashMap не требуют общей блокировки, поэтому пачка — это просто цикл
+    @Override
+    public List<ShortUrl> saveAllIfAbsent(List<ShortUrl> shortUrls) {
+        List<ShortUrl> rejected = new ArrayList<>();
+        for (ShortUrl shortUrl : shortUrls) {
+            if (!saveIfAbsent(shortUrl)) rejected.add(shortUrl);
+        }
+        return rejected;
     }
 
     @Override
     public Optional<ShortUrl> findByPath(String path) {
-        return urlsById.values().stream()
-                .filter(url -> url.getShortPath().equals(path))
-                .findFirst();
+        return Optional.ofNullable(urlsByPath.get(path));
     }
 
     @Override
     public List<ShortUrl> findAllUrlsByUserUuid(UUID userUuid) {
-        return urlsById.values().stream()
-                .filter(url -> url.getUserUuid().equals(userUuid))
+        return findUrlsByUserUuid(userUuid, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUserUuid(UUID userUuid, int offset, int limit) {
+        Set<Long> ids = urlIdsByOwner.get(userUuid);
+        if (ids == null) return List.of();
+        return ids.stream()
+                .map(urlsById::get)
+                .filter(Objects::nonNull)
+                .skip(offset)
+                .limit(limit)
                 .toList();
     }
 
     @Override
     public void delete(String path) {
-        ShortUrl urlToDelete = findByPath(path)
-                .orElse(null);
+        ShortUrl urlToDelete = urlsByPath.remove(path);
 
         if (urlToDelete != null) {
-            urlsById.remove(urlToDelete.getId());
+            urlsById.remove(urlToDelete.getId(), urlToDelete);
+            removeFromOwnerIndex(urlToDelete);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> deleteAll(Collection<String> paths) {
+        List<ShortUrl> deleted = new ArrayList<>();
+        for (String path : paths) {
+            ShortUrl urlToDelete = urlsByPath.remove(path);
+            if (urlToDelete != null) {
+                urlsById.remove(urlToDelete.getId(), urlToDelete);
+                removeFromOwnerIndex(urlToDelete);
+                deleted.add(urlToDelete);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public void updateClicksCounter(String path, int clicksCounter) {
+        ShortUrl shortUrl = urlsByPath.get(path);
+        if (shortUrl != null) {
+            shortUrl.setClicksCounter(clicksCounter);
+        }
+    }
+
+    @Override
+    public long count() {
+        return urlsByPath.mappingCount();
+    }
+
+    @Override
+    public void forEach(Consumer<ShortUrl> action) {
+        urlsById.values().forEach(action);
+    }
+
+    // Ссылки, восстановленные из хранилища, не должны получить повторно уже выданные id
+    private void reserveId(long id) {
+        if (id >= nextUrlId.get()) {
+            nextUrlId.accumulateAndGet(id + 1, Math::max);
         }
     }
+
+    private void addToOwnerIndex(ShortUrl shortUrl) {
+        urlIdsByOwner.compute(shortUrl.getUserUuid(), (uuid, ids) -> {
+            if (ids == null) ids = new ConcurrentSkipListSet<>();
+            ids.add(shortUrl.getId());
+            return ids;
+        });
+    }
+
+    private void removeFromOwnerIndex(ShortUrl shortUrl) {
+        urlIdsByOwner.computeIfPresent(shortUrl.getUserUuid(), (uuid, ids) -> {
+            ids.remove(shortUrl.getId());
+            return ids.isEmpty() ? null : ids;
+        });
+    }
 }
@@ -4,14 +4,32 @@ import dev.urls.model.User;
 import dev.urls.repository.UserRepository;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+// Потокобезопасное хранилище пользователей с уникальным индексом по имени
 public class UserRepositoryImpl implements UserRepository {
-    private final Map<UUID, User> users = new HashMap<>();
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, User> usersByName = new ConcurrentHashMap<>();
 
+    // Используется при восстановлении данных, имя не проверяется
     @Override
     public void save(User user) {
+        User previous = users.put(user.getUUID(), user);
+        if (previous != null && !previous.getUsername().equals(user.getUsername())) {
+            usersByName.remove(previous.getUsername(), previous);
+        }
+        usersByName.put(user.getUsername(), user);
+    }
+
+    @Override
+    public boolean saveIfAbsent(User user) {
+        // Имя резервируется атомарно, поэтому две одновременные регистрации с одним именем не пройдут обе
+        if (usersByName.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
         users.put(user.getUUID(), user);
+        return true;
     }
 
     @Override
@@ -21,8 +39,11 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     public Optional<User> findByUsername(String username) {
-        return users.values().stream()
-                .filter(user -> user.getUsername().equals(username))
-                .findFirst();
+        return Optional.ofNullable(usersByName.get(username));
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        users.values().forEach(action);
     }
 }
@@ -0,0 +1,39 @@
+package dev.urls.service;
+
+import dev.urls.model.ClickHistory;
+import dev.urls.model.ClickStats;
+import dev.urls.model.ShortUrl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Статистика кликов по ссылкам во времени. История создаётся при первом переходе по ссылке
+// и занимает фиксированный объём памяти (см. ClickHistory); хранится только в памяти.
+public class ClickAnalyticsService {
+    private final ConcurrentHashMap<Long, ClickHistory> histories = new ConcurrentHashMap<>();
+
+    public ClickHistory historyOf(ShortUrl shortUrl) {
+        ClickHistory history = histories.get(shortUrl.getId());
+        if (history != null) return history;
+        return histories.computeIfAbsent(shortUrl.getId(), id -> new ClickHistory());
+    }
+
+    public ClickStats statsOf(ShortUrl shortUrl) {
+        ClickHistory history = histories.get(shortUrl.getId());
+        return history != null ? history.snapshot(System.currentTimeMillis()) : ClickStats.EMPTY;
+    }
+
+    public ClickStats statsOf(List<ShortUrl> shortUrls) {
+        long now = System.currentTimeMillis();
+        ClickStats total = ClickStats.EMPTY;
+        for (ShortUrl shortUrl : shortUrls) {
+            ClickHistory history = histories.get(shortUrl.getId());
+            if (history != null) total = total.plus(history.snapshot(now));
+        }
+        return total;
+    }
+
+    public void remove(ShortUrl shortUrl) {
+        histories.remove(shortUrl.getId());
+    }
+}
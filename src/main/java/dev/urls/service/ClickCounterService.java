@@ -0,0 +1,51 @@
+package dev.urls.service;
+
+import dev.urls.model.ShortUrl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики кликов на LongAdder: одновременные клики по одной ссылке не конкурируют за одну ячейку памяти.
+// Проверка лимита и инкремент не атомарны вместе, поэтому при N одновременных кликах
+// лимит может быть превышен не более чем на N - 1 кликов.
+public class ClickCounterService {
+    private final ConcurrentHashMap<Long, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public boolean tryClick(ShortUrl shortUrl) {
+        LongAdder counter = counterOf(shortUrl);
+        if (counter.sum() >= shortUrl.getClicksLimit()) {
+            return false;
+        }
+        counter.increment();
+        return true;
+    }
+
+    public int getClicks(ShortUrl shortUrl) {
+        LongAdder counter = counters.get(shortUrl.getId());
+        return counter != null ? (int) counter.sum() : shortUrl.getClicksCounter();
+    }
+
+    // Сбрасывает счётчик: при следующем обращении он будет заново взят из ShortUrl.clicksCounter
+    public void reset(ShortUrl shortUrl) {
+        counters.remove(shortUrl.getId());
+    }
+
+    public void remove(ShortUrl shortUrl) {
+        counters.remove(shortUrl.getId());
+    }
+
+    // Счётчик ещё действует: его не сбросили при изменении лимита и не удалили вместе со ссылкой
+    public boolean isCurrent(long id, LongAdder counter) {
+        return counters.get(id) == counter;
+    }
+
+    public LongAdder counterOf(ShortUrl shortUrl) {
+        LongAdder counter = counters.get(shortUrl.getId());
+        if (counter != null) return counter;
+        return counters.computeIfAbsent(shortUrl.getId(), id -> {
+            LongAdder adder = new LongAdder();
+            adder.add(shortUrl.getClicksCounter());
+            return adder;
+        });
+    }
+}
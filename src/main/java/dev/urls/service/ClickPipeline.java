@@ -0,0 +1,201 @@
+package dev.urls.service;
+
+import dev.urls.model.RedirectTarget;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Асинхронная запись кликов. Переход по ссылке только кладёт событие в ограниченный кольцевой буфер
+// без блокировок, а фоновый поток собирает события пачками, складывает клики по одной ссылке
+// и передаёт их обработчику (запись счётчика в репозиторий) раз в интервал или при накоплении пачки.
+//
+// Лимит кликов проверяется синхронно по счётчику в памяти (ClickCounterService), поэтому
+// задержка записи не влияет на деактивацию ссылки: в репозитории счётчик отстаёт не больше,
+// чем на интервал сброса и содержимое буфера.
+public class ClickPipeline implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public enum OverflowPolicy {
+        // Ждать, пока в буфере освободится место
+        BLOCK,
+        // Не записывать клик в репозиторий (лимит всё равно учитывается в памяти)
+        DROP,
+        // Передать клик обработчику сразу в потоке перехода
+        SYNC
+    }
+
+    @FunctionalInterface
+    public interface Flusher {
+        // clicks — сколько кликов по ссылке накопилось с прошлого сброса
+        void flush(RedirectTarget target, int clicks);
+    }
+
+    private final RingBuffer ring;
+    private final OverflowPolicy overflowPolicy;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final Flusher flusher;
+    private final Thread aggregator;
+    private volatile boolean running = true;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+
+    public ClickPipeline(int capacity, OverflowPolicy overflowPolicy, long flushIntervalMs, int batchSize, Flusher flusher) {
+        this.ring = new RingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.batchSize = batchSize;
+        this.flusher = flusher;
+        this.aggregator = new Thread(this::aggregateLoop, "click-aggregator");
+        this.aggregator.setDaemon(true);
+        this.aggregator.start();
+    }
+
+    public void publish(RedirectTarget target) {
+        published.increment();
+        if (ring.offer(target)) return;
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                while (!ring.offer(target)) {
+                    if (!running) {
+                        flusher.flush(target, 1);
+                        return;
+                    }
+                    Thread.onSpinWait();
+                    Thread.yield();
+                }
+            }
+            case DROP -> dropped.increment();
+            case SYNC -> flusher.flush(target, 1);
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFlushedBatchCount() {
+        return flushedBatches.sum();
+    }
+
+    // Останавливает поток и сбрасывает всё, что осталось в буфере
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(aggregator);
+        try {
+            aggregator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void aggregateLoop() {
+        // Клики по одной ссылке за интервал складываются в одну запись
+        Map<String, Pending> pending = new HashMap<>();
+        long lastFlush = System.nanoTime();
+        while (true) {
+            boolean stopping = !running;
+            int drained = 0;
+            RedirectTarget target;
+            while (drained < batchSize && (target = ring.poll()) != null) {
+                drained++;
+                Pending entry = pending.get(target.getShortPath());
+                if (entry == null) {
+                    pending.put(target.getShortPath(), new Pending(target));
+                } else {
+                    entry.target = target;
+                    entry.clicks++;
+                }
+            }
+            long now = System.nanoTime();
+            if (!pending.isEmpty() && (pending.size() >= batchSize || now - lastFlush >= flushIntervalNanos || stopping)) {
+                flush(pending);
+                lastFlush = now;
+            }
+            if (stopping && drained == 0 && pending.isEmpty()) return;
+            if (drained == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void flush(Map<String, Pending> pending) {
+        for (Pending entry : pending.values()) {
+            try {
+                flusher.flush(entry.target, entry.clicks);
+            } catch (RuntimeException e) {
+                System.out.println("Ошибка записи кликов по ссылке " + entry.target.getShortPath() + ": " + e.getMessage());
+            }
+        }
+        pending.clear();
+        flushedBatches.increment();
+    }
+
+    private static final class Pending {
+        RedirectTarget target;
+        int clicks = 1;
+
+        Pending(RedirectTarget target) {
+            this.target = target;
+        }
+    }
+
+    // Ограниченная очередь многих писателей и одного читателя на кольцевом буфере (схема Вьюкова):
+    // у каждой ячейки есть номер, по которому писатель видит, что ячейка свободна, а читатель — что она заполнена
+    private static final class RingBuffer {
+        private final Object[] buffer;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        RingBuffer(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            this.buffer = new Object[size];
+            this.sequences = new AtomicLongArray(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) sequences.set(i, i);
+        }
+
+        boolean offer(RedirectTarget target) {
+            long position = tail.get();
+            int index;
+            while (true) {
+                index = (int) position & mask;
+                long difference = sequences.get(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) break;
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+            buffer[index] = target;
+            sequences.set(index, position + 1);
+            return true;
+        }
+
+        // Вызывается только из потока агрегации
+        RedirectTarget poll() {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) return null;
+            RedirectTarget target = (RedirectTarget) buffer[index];
+            buffer[index] = null;
+            sequences.set(index, head + buffer.length);
+            head++;
+            return target;
+        }
+    }
+}
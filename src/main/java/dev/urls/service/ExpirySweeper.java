@@ -0,0 +1,104 @@
+package dev.urls.service;
+
+import dev.urls.model.ShortUrl;
+
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Фоновое удаление устаревших ссылок. Ссылки хранятся в индексе, упорядоченном по времени истечения,
+// поэтому каждый проход просматривает только уже истёкшие записи, а не все ссылки.
+public class ExpirySweeper implements AutoCloseable {
+    private record Entry(long expiresAtMillis, String shortPath) {
+    }
+
+    private static final Comparator<Entry> BY_EXPIRY = Comparator
+            .comparingLong(Entry::expiresAtMillis)
+            .thenComparing(Entry::shortPath);
+
+    private final ConcurrentSkipListSet<Entry> byExpiry = new ConcurrentSkipListSet<>(BY_EXPIRY);
+    // Актуальная запись для каждой ссылки, чтобы при продлении убрать старую из индекса
+    private final ConcurrentHashMap<String, Entry> scheduled = new ConcurrentHashMap<>();
+    private final LongAdder evicted = new LongAdder();
+    private final Consumer<String> onExpired;
+    private final long intervalMillis;
+    private final ScheduledExecutorService executor;
+
+    public ExpirySweeper(long intervalMillis, Consumer<String> onExpired) {
+        this.onExpired = onExpired;
+        this.intervalMillis = intervalMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Ставит ссылку в очередь на удаление или переносит её, если время жизни изменилось
+    public void schedule(ShortUrl shortUrl) {
+        long expiresAt = shortUrl.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Entry entry = new Entry(expiresAt, shortUrl.getShortPath());
+        Entry previous = scheduled.put(entry.shortPath(), entry);
+        if (previous != null) byExpiry.remove(previous);
+        byExpiry.add(entry);
+    }
+
+    public void cancel(String shortPath) {
+        Entry previous = scheduled.remove(shortPath);
+        if (previous != null) byExpiry.remove(previous);
+    }
+
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    public int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    // Останавливает фоновые проходы; начатый проход доработает до конца
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            Entry entry;
+            // Голова извлекается одним вызовом: отдельные isEmpty и first разрывал бы параллельный cancel
+            while ((entry = byExpiry.pollFirst()) != null) {
+                if (entry.expiresAtMillis() > now) {
+                    // Ещё не истекла — возвращаем. Если ссылку тем временем отменили или перепланировали,
+                    // устаревшая запись отсеется при извлечении проверкой по scheduled
+                    byExpiry.add(entry);
+                    return;
+                }
+                if (!scheduled.remove(entry.shortPath(), entry)) continue;
+                try {
+                    onExpired.accept(entry.shortPath());
+                    evicted.increment();
+                } catch (RuntimeException e) {
+                    // Ошибка на одной ссылке не останавливает проход: ссылка повторяется на следующем,
+                    // если её тем временем не перепланировали
+                    System.out.println("Ошибка удаления устаревшей ссылки " + entry.shortPath() + ": " + e.getMessage());
+                    retry(new Entry(now + intervalMillis, entry.shortPath()));
+                }
+            }
+        } catch (Throwable e) {
+            // Исключение, дошедшее до планировщика, отменило бы все следующие проходы
+            System.out.println("Ошибка очистки устаревших ссылок: " + e);
+        }
+    }
+
+    private void retry(Entry entry) {
+        if (scheduled.putIfAbsent(entry.shortPath(), entry) == null) byExpiry.add(entry);
+    }
+}
@@ -0,0 +1,83 @@
+package dev.urls.service;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Общая таблица оригинальных адресов: по нормализованному адресу хранится одна строка и число ссылок на неё.
+// Ссылки с одинаковым адресом получают один и тот же экземпляр строки, поэтому тысячи коротких ссылок
+// на одну страницу держат в памяти один текст. Строка убирается из таблицы, когда удалена последняя ссылка.
+//
+// Нормализация не меняет смысла адреса: схема и хост в нижнем регистре, без порта по умолчанию,
+// пустой путь заменяется на "/". Перенаправление идёт на нормализованный адрес.
+public class OriginalUrlTable {
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final String url;
+        int refs;
+
+        Entry(String url) {
+            this.url = url;
+        }
+    }
+
+    // Возвращает общий экземпляр адреса и учитывает ещё одну ссылку на него
+    public String acquire(String url) {
+        return entries.compute(normalize(url), (key, entry) -> {
+            if (entry == null) entry = new Entry(key);
+            entry.refs++;
+            return entry;
+        }).url;
+    }
+
+    // Удалена одна из ссылок на адрес
+    public void release(String url) {
+        entries.computeIfPresent(normalize(url), (key, entry) -> --entry.refs > 0 ? entry : null);
+    }
+
+    // Сколько разных адресов хранится
+    public int size() {
+        return entries.size();
+    }
+
+    // Сколько ссылок ведёт на адреса таблицы
+    public long getReferenceCount() {
+        long refs = 0;
+        for (Entry entry : entries.values()) refs += entry.refs;
+        return refs;
+    }
+
+    // Уже нормализованный адрес (обычный случай) возвращается тем же экземпляром без выделения памяти
+    public static String normalize(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) return url;
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) authorityEnd++;
+        // Имя пользователя и пароль чувствительны к регистру, хост — нет
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) hostStart = authorityStart;
+        boolean http = url.regionMatches(true, 0, "http", 0, schemeEnd) && schemeEnd == 4;
+        boolean https = url.regionMatches(true, 0, "https", 0, schemeEnd) && schemeEnd == 5;
+        boolean defaultPort = (http && url.startsWith(":80", authorityEnd - 3))
+                || (https && url.startsWith(":443", authorityEnd - 4));
+        if (!defaultPort && authorityEnd < url.length() && url.charAt(authorityEnd) == '/'
+                && isLowerCase(url, 0, schemeEnd) && isLowerCase(url, hostStart, authorityEnd)) {
+            return url;
+        }
+        String host = url.substring(hostStart, authorityEnd).toLowerCase(Locale.ROOT);
+        if (defaultPort) host = host.substring(0, host.lastIndexOf(':'));
+        String rest = url.substring(authorityEnd);
+        if (rest.isEmpty() || rest.charAt(0) != '/') rest = "/" + rest;
+        return url.substring(0, schemeEnd).toLowerCase(Locale.ROOT) + "://"
+                + url.substring(authorityStart, hostStart) + host + rest;
+    }
+
+    private static boolean isLowerCase(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z' || c > 0x7f) return false;
+        }
+        return true;
+    }
+}
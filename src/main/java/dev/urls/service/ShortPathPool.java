@@ -0,0 +1,79 @@
+package dev.urls.service;
+
+import dev.urls.repository.UrlRepository;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Пул заранее сгенерированных и проверенных коротких путей.
+// Фоновый поток пополняет пул, когда в нём остаётся меньше lowWatermark путей,
+// поэтому при создании ссылки путь просто забирается из неблокирующей очереди.
+public class ShortPathPool {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Queue<String> paths = new ConcurrentLinkedQueue<>();
+    // Пути, находящиеся в пуле: не даём одному и тому же пути попасть в пул дважды
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Supplier<String> generator;
+    private final UrlRepository urlRepository;
+    private final int capacity;
+    private final int lowWatermark;
+    private final Thread refiller;
+
+    public ShortPathPool(Supplier<String> generator, UrlRepository urlRepository, int capacity, int lowWatermark) {
+        this.generator = generator;
+        this.urlRepository = urlRepository;
+        this.capacity = capacity;
+        this.lowWatermark = lowWatermark;
+        this.refiller = new Thread(this::refillLoop, "short-path-pool-refill");
+        this.refiller.setDaemon(true);
+        this.refiller.start();
+    }
+
+    // Если пул опустел быстрее, чем пополняется, путь генерируется на месте
+    public String take() {
+        String path = paths.poll();
+        if (path == null) {
+            LockSupport.unpark(refiller);
+            return generator.get();
+        }
+        reserved.remove(path);
+        if (size.decrementAndGet() < lowWatermark) {
+            LockSupport.unpark(refiller);
+        }
+        return path;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void refillLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                while (size.get() < capacity) {
+                    String path = generator.get();
+                    if (urlRepository.findByPath(path).isEmpty() && reserved.add(path)) {
+                        paths.add(path);
+                        size.incrementAndGet();
+                    }
+                }
+            } catch (IllegalStateException e) {
+                // Узлу сейчас не принадлежит ни один путь (например, он выведен из кольца): пробуем позже
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            // Ждём, пока пул не опустеет до нижней границы (take разбудит поток)
+            while (size.get() >= lowWatermark && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -1,19 +1,89 @@
 package dev.urls.service;
 
 import dev.urls.config.AppConfig;
+import dev.urls.repository.UrlRepository;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 public class UrlGeneratorService {
     private static final String PATH_CHARS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private final Random random = new Random();
+    private static final int MAX_SEQUENCE_LENGTH = 10; // 62^10 ещё помещается в long
+    private static final int FEISTEL_ROUNDS = 4;
+    // Сколько путей перебрать в поисках своего, прежде чем решить, что узлу не принадлежит ни один путь
+    public static final int MAX_OWNED_ATTEMPTS = 1 << 20;
+
+    public enum Mode {
+        // Случайный путь, уникальность проверяется при сохранении
+        RANDOM,
+        // Путь выводится из id ссылки перестановкой Фейстеля, поэтому уникален по построению
+        SEQUENCE,
+        // Случайный путь из пула заранее проверенных путей, который пополняется в фоне
+        POOL
+    }
+
     private final int pathLength;
+    private final Mode mode;
+    private final long keyspace;
+    private final int halfBits;
+    private final long halfMask;
+    private final long key;
+    private final ShortPathPool pool;
+    // В кластере узел выдаёт только пути из своей части кольца
+    private volatile Predicate<String> owned = path -> true;
 
     public UrlGeneratorService(AppConfig config) {
+        this(config, null);
+    }
+
+    // Репозиторий нужен только режиму pool, чтобы заранее проверять пути на занятость
+    public UrlGeneratorService(AppConfig config, UrlRepository urlRepository) {
         this.pathLength = config.getShortUrlLength();
+        this.mode = Mode.valueOf(config.getGeneratorMode().toUpperCase());
+        this.key = config.getGeneratorKey();
+        if (mode == Mode.SEQUENCE && pathLength > MAX_SEQUENCE_LENGTH) {
+            throw new IllegalArgumentException("Режим sequence поддерживает длину пути не больше " + MAX_SEQUENCE_LENGTH);
+        }
+        long space = 1;
+        for (int i = 0; i < Math.min(pathLength, MAX_SEQUENCE_LENGTH); i++) space *= PATH_CHARS.length();
+        this.keyspace = space;
+        // Сеть Фейстеля работает на чётном числе бит, покрывающем всё пространство путей
+        int bits = 64 - Long.numberOfLeadingZeros(keyspace - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        if (mode == Mode.POOL) {
+            if (urlRepository == null) {
+                throw new IllegalArgumentException("Для режима pool нужен репозиторий ссылок");
+            }
+            this.pool = new ShortPathPool(this::generatePath, urlRepository,
+                    config.getGeneratorPoolSize(), config.getGeneratorPoolLowWatermark());
+        } else {
+            this.pool = null;
+        }
+    }
+
+    // Ограничивает выдаваемые пути частью пространства, например долей узла на кольце кластера.
+    // Случайные пути и пути из пула перегенерируются, пока не попадут в свою часть (в среднем N попыток на N узлов).
+    // Путь режима sequence зависит от id, поэтому чужой путь пропускает вызывающий код, см. isOwned
+    public void restrictTo(Predicate<String> owned) {
+        this.owned = owned;
+    }
+
+    public boolean isOwned(String path) {
+        return owned.test(path);
     }
 
     public String generatePath() {
+        Predicate<String> owned = this.owned;
+        for (int attempt = 0; attempt < MAX_OWNED_ATTEMPTS; attempt++) {
+            String path = randomPath();
+            if (owned.test(path)) return path;
+        }
+        throw new IllegalStateException("Узлу не принадлежит ни один короткий путь");
+    }
+
+    private String randomPath() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         StringBuilder result = new StringBuilder(pathLength);
         for (int i = 0; i < pathLength; i++) {
             int randomIndex = random.nextInt(PATH_CHARS.length());
@@ -21,4 +91,60 @@ public class UrlGeneratorService {
         }
         return result.toString();
     }
-}
\ No newline at end of file
+
+    // Путь для ссылки с данным id: в режиме sequence разные id всегда дают разные пути
+    public String generatePath(long id) {
+        if (mode == Mode.RANDOM) return generatePath();
+        if (mode == Mode.POOL) {
+            // Пути, набранные в пул до смены состава кластера, могли уйти другому узлу
+            for (int attempt = 0; attempt < MAX_OWNED_ATTEMPTS; attempt++) {
+                String path = pool.take();
+                if (isOwned(path)) return path;
+            }
+            throw new IllegalStateException("Узлу не принадлежит ни один короткий путь");
+        }
+        if (id < 0 || id >= keyspace) {
+            throw new IllegalStateException("Пространство коротких путей длины " + pathLength + " исчерпано");
+        }
+        return encode(permute(id));
+    }
+
+    public boolean isDerivedFromId() {
+        return mode == Mode.SEQUENCE;
+    }
+
+    // Перестановка [0, 2^(2*halfBits)) с «прокруткой цикла», пока значение не попадёт в [0, keyspace)
+    private long permute(long value) {
+        do {
+            value = feistel(value);
+        } while (value >= keyspace);
+        return value;
+    }
+
+    private long feistel(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < FEISTEL_ROUNDS; round++) {
+            long next = left ^ (roundFunction(right, round) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long roundFunction(long half, int round) {
+        long x = half + key + round * 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    private String encode(long value) {
+        char[] chars = new char[pathLength];
+        for (int i = pathLength - 1; i >= 0; i--) {
+            chars[i] = PATH_CHARS.charAt((int) (value % PATH_CHARS.length()));
+            value /= PATH_CHARS.length();
+        }
+        return new String(chars);
+    }
+}
@@ -1,34 +1,74 @@
 package dev.urls.service;
 
+import dev.urls.model.ClickStats;
+import dev.urls.model.RedirectTarget;
 import dev.urls.model.ShortUrl;
 
-import java.net.URISyntaxException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UrlService {
     ShortUrl createShortUrl(String originalUrl, UUID userUuid, Integer maxClicks, Integer lifetimeHours);
 
+    // Пакетное создание: адреса проверяются параллельно, и если хоть один неверен, не создаётся ни одна ссылка.
+    // Ссылки возвращаются в порядке адресов
+    List<ShortUrl> createShortUrls(List<String> originalUrls, UUID userUuid, Integer lifetimeHours, Integer maxClicks);
+
+    // Потоковый импорт: по одному адресу в строке (пустые строки и строки с # пропускаются).
+    // Строки читаются и сохраняются пачками, поэтому файл любого размера не держится в памяти целиком.
+    // Строки с неверным адресом пропускаются; возвращает число созданных ссылок
+    long importShortUrls(BufferedReader source, UUID userUuid, Integer lifetimeHours, Integer maxClicks,
+                         Consumer<ShortUrl> onCreated) throws IOException;
+
     void deleteShortUrl(String shortCode);
 
+    // Пакетное удаление; возвращает число удалённых ссылок
+    int deleteShortUrls(Collection<String> shortPaths);
+
     Optional<ShortUrl> findByPath(String shortPath);
 
     List<ShortUrl> findAllUrlsByUuid(UUID userUuid);
 
+    List<ShortUrl> findUrlsByUuid(UUID userUuid, int offset, int limit);
+
     Optional<ShortUrl> getShortUrl(String shortPath);
 
+    // null, если ссылки нет (в том числе если её только что удалила фоновая очистка)
     UUID getShortUrlOwner(String shortPath);
 
     String getFullShortUrl(String shortPath);
 
-    String getShortUrlStatus(ShortUrl shortUrl) throws URISyntaxException;
+    String getShortUrlStatus(ShortUrl shortUrl);
 
     void clickShortUrl(String shortPath);
 
+    // Засчитывает переход по ссылке и возвращает адрес для перенаправления, если ссылка доступна
+    Optional<String> followShortUrl(String shortPath);
+
+    // То же, что followShortUrl, но без выделения памяти на уже посещённых ссылках.
+    // Возвращает null, если ссылка не найдена или недоступна.
+    RedirectTarget resolveRedirect(String shortPath);
+
     void updateUrlClicksLimit(String shortPath, int newLimit);
 
     void updateUrlLifeTime(String shortPath, int hours);
+
+    // Клики по ссылке по минутам, часам и суткам
+    ClickStats getClickStats(String shortPath);
+
+    // Клики по всем ссылкам пользователя по минутам, часам и суткам
+    ClickStats getUserClickStats(UUID userUuid);
+
+    // Сколько устаревших ссылок удалено фоновой очисткой
+    long getExpiredUrlsCount();
+
+    // Сколько ссылок деактивировано из-за исчерпания лимита кликов
+    long getDeactivatedUrlsCount();
 }
 
 
@@ -6,6 +6,7 @@ import java.util.Optional;
 import java.util.UUID;
 
 public interface UserService {
+    // Бросает IllegalArgumentException, если имя уже занято
     User createUser(String username);
 
     Optional<User> findByUuid(UUID uuid);
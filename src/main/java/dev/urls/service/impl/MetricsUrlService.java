@@ -0,0 +1,255 @@
+package dev.urls.service.impl;
+
+import dev.urls.metrics.MetricsRegistry;
+import dev.urls.metrics.MetricsRegistry.Operation;
+import dev.urls.model.ClickStats;
+import dev.urls.model.RedirectTarget;
+import dev.urls.model.ShortUrl;
+import dev.urls.service.UrlService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Декоратор, замеряющий операции сервиса ссылок (см. MetricsRegistry). У частых операций
+// (переходы, поиск по пути) задержка замеряется выборочно, чтобы не замедлять переход по ссылке.
+// resolveRedirect длится около 115 нс, и даже выборка 1 из 16 добавляет к нему заметную долю,
+// поэтому у него своя, более редкая частота замеров (metrics.redirect.sampling)
+public class MetricsUrlService implements UrlService {
+    private final UrlService delegate;
+    private final Operation create;
+    private final Operation createBatch;
+    private final Operation importUrls;
+    private final Operation delete;
+    private final Operation deleteBatch;
+    private final Operation findByPath;
+    private final Operation findByUuid;
+    private final Operation click;
+    private final Operation follow;
+    private final Operation resolveRedirect;
+    private final Operation updateLimit;
+    private final Operation updateLifetime;
+    private final Operation clickStats;
+
+    public MetricsUrlService(UrlService delegate, MetricsRegistry metrics, int sampling, int redirectSampling) {
+        this.delegate = delegate;
+        this.create = metrics.operation("url.create", 1);
+        this.createBatch = metrics.operation("url.createBatch", 1);
+        this.importUrls = metrics.operation("url.import", 1);
+        this.delete = metrics.operation("url.delete", 1);
+        this.deleteBatch = metrics.operation("url.deleteBatch", 1);
+        this.findByPath = metrics.operation("url.findByPath", sampling);
+        this.findByUuid = metrics.operation("url.findByUuid", 1);
+        this.click = metrics.operation("url.click", 1);
+        this.follow = metrics.operation("url.follow", sampling);
+        this.resolveRedirect = metrics.operation("url.resolveRedirect", redirectSampling);
+        this.updateLimit = metrics.operation("url.updateClicksLimit", 1);
+        this.updateLifetime = metrics.operation("url.updateLifeTime", 1);
+        this.clickStats = metrics.operation("url.clickStats", 1);
+        metrics.gauge("links.expired", delegate::getExpiredUrlsCount);
+        metrics.gauge("links.deactivated", delegate::getDeactivatedUrlsCount);
+    }
+
+    @Override
+    public ShortUrl createShortUrl(String originalUrl, UUID userUuid, Integer lifetimeHours, Integer maxClicks) {
+        long start = create.start();
+        try {
+            return delegate.createShortUrl(originalUrl, userUuid, lifetimeHours, maxClicks);
+        } finally {
+            create.stop(start);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> createShortUrls(List<String> originalUrls, UUID userUuid, Integer lifetimeHours, Integer maxClicks) {
+        long start = createBatch.start();
+        try {
+            return delegate.createShortUrls(originalUrls, userUuid, lifetimeHours, maxClicks);
+        } finally {
+            createBatch.stop(start);
+        }
+    }
+
+    @Override
+    public long importShortUrls(BufferedReader source, UUID userUuid, Integer lifetimeHours, Integer maxClicks,
+                                Consumer<ShortUrl> onCreated) throws IOException {
+        long start = importUrls.start();
+        try {
+            return delegate.importShortUrls(source, userUuid, lifetimeHours, maxClicks, onCreated);
+        } finally {
+            importUrls.stop(start);
+        }
+    }
+
+    @Override
+    public void deleteShortUrl(String shortCode) {
+        long start = delete.start();
+        try {
+            delegate.deleteShortUrl(shortCode);
+        } finally {
+            delete.stop(start);
+        }
+    }
+
+    @Override
+    public int deleteShortUrls(Collection<String> shortPaths) {
+        long start = deleteBatch.start();
+        try {
+            return delegate.deleteShortUrls(shortPaths);
+        } finally {
+            deleteBatch.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<ShortUrl> findByPath(String shortPath) {
+        long start = findByPath.start();
+        boolean found = false;
+        try {
+            Optional<ShortUrl> shortUrl = delegate.findByPath(shortPath);
+            found = shortUrl.isPresent();
+            return shortUrl;
+        } finally {
+            findByPath.stop(start, found);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findAllUrlsByUuid(UUID userUuid) {
+        long start = findByUuid.start();
+        try {
+            return delegate.findAllUrlsByUuid(userUuid);
+        } finally {
+            findByUuid.stop(start);
+        }
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUuid(UUID userUuid, int offset, int limit) {
+        long start = findByUuid.start();
+        try {
+            return delegate.findUrlsByUuid(userUuid, offset, limit);
+        } finally {
+            findByUuid.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<ShortUrl> getShortUrl(String shortPath) {
+        // Тот же поиск по пути, что и findByPath, поэтому учитывается в той же операции
+        long start = findByPath.start();
+        boolean found = false;
+        try {
+            Optional<ShortUrl> shortUrl = delegate.getShortUrl(shortPath);
+            found = shortUrl.isPresent();
+            return shortUrl;
+        } finally {
+            findByPath.stop(start, found);
+        }
+    }
+
+    @Override
+    public UUID getShortUrlOwner(String shortPath) {
+        return delegate.getShortUrlOwner(shortPath);
+    }
+
+    @Override
+    public String getFullShortUrl(String shortPath) {
+        return delegate.getFullShortUrl(shortPath);
+    }
+
+    @Override
+    public String getShortUrlStatus(ShortUrl shortUrl) {
+        return delegate.getShortUrlStatus(shortUrl);
+    }
+
+    @Override
+    public void clickShortUrl(String shortPath) {
+        long start = click.start();
+        try {
+            delegate.clickShortUrl(shortPath);
+        } finally {
+            click.stop(start);
+        }
+    }
+
+    @Override
+    public Optional<String> followShortUrl(String shortPath) {
+        long start = follow.start();
+        boolean found = false;
+        try {
+            Optional<String> originalUrl = delegate.followShortUrl(shortPath);
+            found = originalUrl.isPresent();
+            return originalUrl;
+        } finally {
+            follow.stop(start, found);
+        }
+    }
+
+    @Override
+    public RedirectTarget resolveRedirect(String shortPath) {
+        long start = resolveRedirect.start();
+        boolean found = false;
+        try {
+            RedirectTarget target = delegate.resolveRedirect(shortPath);
+            found = target != null;
+            return target;
+        } finally {
+            resolveRedirect.stop(start, found);
+        }
+    }
+
+    @Override
+    public void updateUrlClicksLimit(String shortPath, int newLimit) {
+        long start = updateLimit.start();
+        try {
+            delegate.updateUrlClicksLimit(shortPath, newLimit);
+        } finally {
+            updateLimit.stop(start);
+        }
+    }
+
+    @Override
+    public void updateUrlLifeTime(String shortPath, int hours) {
+        long start = updateLifetime.start();
+        try {
+            delegate.updateUrlLifeTime(shortPath, hours);
+        } finally {
+            updateLifetime.stop(start);
+        }
+    }
+
+    @Override
+    public ClickStats getClickStats(String shortPath) {
+        long start = clickStats.start();
+        try {
+            return delegate.getClickStats(shortPath);
+        } finally {
+            clickStats.stop(start);
+        }
+    }
+
+    @Override
+    public ClickStats getUserClickStats(UUID userUuid) {
+        long start = clickStats.start();
+        try {
+            return delegate.getUserClickStats(userUuid);
+        } finally {
+            clickStats.stop(start);
+        }
+    }
+
+    @Override
+    public long getExpiredUrlsCount() {
+        return delegate.getExpiredUrlsCount();
+    }
+
+    @Override
+    public long getDeactivatedUrlsCount() {
+        return delegate.getDeactivatedUrlsCount();
+    }
+}
@@ -1,12 +1,20 @@
 package dev.urls.service.impl;
 
 import dev.urls.config.AppConfig;
+import dev.urls.model.ClickStats;
+import dev.urls.model.RedirectTarget;
 import dev.urls.model.ShortUrl;
 import dev.urls.repository.UrlRepository;
+import dev.urls.service.ClickAnalyticsService;
+import dev.urls.service.ClickCounterService;
+import dev.urls.service.ClickPipeline;
+import dev.urls.service.ExpirySweeper;
+import dev.urls.service.OriginalUrlTable;
 import dev.urls.service.UrlGeneratorService;
 import dev.urls.service.UrlService;
 
 import java.awt.Desktop;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -14,76 +22,462 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public class UrlServiceImpl implements UrlService {
     private final UrlRepository urlRepository;
     private final UrlGeneratorService urlGenerator;
     private final AppConfig config;
+    private final ClickCounterService clickCounter = new ClickCounterService();
+    private final ClickAnalyticsService clickAnalytics = new ClickAnalyticsService();
+    // Подготовленные цели перенаправления посещённых ссылок; сбрасываются при любом изменении ссылки
+    private final ConcurrentHashMap<String, RedirectTarget> redirectTargets = new ConcurrentHashMap<>();
+    private final ExpirySweeper expirySweeper;
+    private final ClickPipeline clickPipeline;
+    private final LongAdder deactivated = new LongAdder();
+    // Один экземпляр строки на каждый оригинальный адрес; null, если url.originals.shared=false
+    private final OriginalUrlTable originalUrls;
+    // Режим url.dedup.per.user: ссылка пользователя на каждый адрес, чтобы повторное создание вернуло её; иначе null
+    private final ConcurrentHashMap<UserUrl, String> userLinks;
+    private final LongAdder reused = new LongAdder();
+    // На реплике клики не пишутся в локальный репозиторий, а передаются ведущему узлу
+    private volatile BiConsumer<String, Integer> clickForwarder;
 
     public UrlServiceImpl(UrlRepository urlRepository, UrlGeneratorService urlGenerator, AppConfig config) {
         this.urlRepository = urlRepository;
         this.urlGenerator = urlGenerator;
         this.config = config;
+        // Устаревшие ссылки удаляются в фоне, даже если по ним больше никто не переходит
+        this.expirySweeper = new ExpirySweeper(config.getExpirySweepIntervalMs(), this::expireShortUrl);
+        // Хранилище offheap держит адрес в своей арене, а наружу отдаёт копии: общая строка в таблице лишь занимала бы кучу
+        this.originalUrls = config.isOriginalsShared() && !"offheap".equals(config.getRepositoryLayout()) ?
+                new OriginalUrlTable() : null;
+        this.userLinks = config.isDedupPerUser() ? new ConcurrentHashMap<>() : null;
+        urlRepository.forEach(shortUrl -> {
+            adopt(shortUrl);
+            expirySweeper.schedule(shortUrl);
+        });
+        // Клики записываются в репозиторий в фоне пачками, переход по ссылке не ждёт записи
+        this.clickPipeline = new ClickPipeline(config.getClicksQueueCapacity(),
+                ClickPipeline.OverflowPolicy.valueOf(config.getClicksOverflowPolicy().toUpperCase()),
+                config.getClicksFlushIntervalMs(), config.getClicksBatchSize(), this::flushClicks);
+    }
+
+    // Останавливает фоновую очистку и дописывает в репозиторий клики, ещё не сброшенные фоновым потоком
+    public void close() {
+        expirySweeper.close();
+        clickPipeline.close();
+    }
+
+    // Режим реплики: накопленные клики (короткий путь и их число) уходят forwarder, а не в репозиторий
+    public void forwardClicksTo(BiConsumer<String, Integer> forwarder) {
+        this.clickForwarder = forwarder;
+    }
+
+    // Клики, принятые репликой: учитываются так же, как переходы через этот узел
+    public void addClicks(String shortPath, int clicks) {
+        ShortUrl shortUrl = urlRepository.findByPath(shortPath).orElse(null);
+        if (shortUrl == null || !shortUrl.isActive()) return;
+        LongAdder counter = clickCounter.counterOf(shortUrl);
+        counter.add(clicks);
+        clickAnalytics.historyOf(shortUrl).record(clicks, System.currentTimeMillis());
+        urlRepository.updateClicksCounter(shortPath, (int) counter.sum());
+        isShortUrlLimitExceeded(shortUrl, true);
+    }
+
+    // Клики, пришедшие на прежний узел-владелец до переключения кольца: счётчик доводится до большего из двух.
+    // Остальные поля ссылки не трогаются, их после переключения меняют уже на этом узле
+    public boolean mergeClicks(String shortPath, int clicksCounter) {
+        ShortUrl shortUrl = urlRepository.findByPath(shortPath).orElse(null);
+        if (shortUrl == null) return false;
+        int extra = clicksCounter - clickCounter.getClicks(shortUrl);
+        if (extra <= 0) return false;
+        addClicks(shortPath, extra);
+        return true;
+    }
+
+    // Ссылка появилась в обход сервиса (восстановлена с диска или перенесена с другого узла):
+    // адрес заменяется общим экземпляром и ссылка учитывается в таблице адресов и индексе пользователя
+    public void adopt(ShortUrl shortUrl) {
+        if (originalUrls != null) shortUrl.setOriginalUrl(originalUrls.acquire(shortUrl.getOriginalUrl()));
+        if (userLinks != null) {
+            userLinks.putIfAbsent(new UserUrl(shortUrl.getUserUuid(), OriginalUrlTable.normalize(shortUrl.getOriginalUrl())),
+                    shortUrl.getShortPath());
+        }
+    }
+
+    // Ссылку заменили или удалили в обход сервиса (изменение пришло с ведущего узла): прежняя версия
+    // освобождает адрес, новая учитывается до сохранения, чтобы в хранилище попал общий экземпляр строки
+    public void replaceAdopted(ShortUrl previous, ShortUrl current) {
+        if (previous != null) forget(previous);
+        if (current != null) adopt(current);
+    }
+
+    // Сколько разных оригинальных адресов хранится в общей таблице
+    public int getSharedUrlCount() {
+        return originalUrls != null ? originalUrls.size() : 0;
+    }
+
+    // Сколько ссылок ссылается на адреса общей таблицы
+    public long getSharedUrlReferences() {
+        return originalUrls != null ? originalUrls.getReferenceCount() : 0;
+    }
+
+    // Сколько раз при создании вернулась уже существующая ссылка пользователя
+    public long getReusedCount() {
+        return reused.sum();
+    }
+
+    // Ссылку изменили в обход сервиса (например, изменение пришло с ведущего узла):
+    // сбрасываем подготовленный переход и счётчик, чтобы они заново взялись из репозитория
+    public void invalidate(String shortPath) {
+        redirectTargets.remove(shortPath);
+        Optional<ShortUrl> found = urlRepository.findByPath(shortPath);
+        if (found.isPresent()) {
+            clickCounter.reset(found.get());
+            expirySweeper.schedule(found.get());
+        } else {
+            expirySweeper.cancel(shortPath);
+        }
     }
 
     @Override
     public ShortUrl createShortUrl(String originalUrl, UUID userUuid, Integer customLifetimeHours, Integer customClicksLimit) {
         validateUrl(originalUrl);
+        ShortUrl existing = findReusable(userUuid, originalUrl, customLifetimeHours, customClicksLimit);
+        if (existing != null) return existing;
+        int lifetimeHours = lifetimeHoursOf(customLifetimeHours);
+        int clicksLimit = clicksLimitOf(customClicksLimit);
+        originalUrl = share(originalUrl);
+
+        long id = urlRepository.getNextUrlId();
+        LocalDateTime now = LocalDateTime.now();
 
-        String shortPath;
+        // Путь занимается атомарно в репозитории; при коллизии пробуем следующий.
+        // В режиме sequence коллизия возможна только с путями, созданными до смены режима,
+        // и путь зависит от id, поэтому берём новый id.
+        ShortUrl shortUrl;
+        boolean saved;
         do {
-            shortPath = urlGenerator.generatePath();
-        } while (urlRepository.findByPath(shortPath).isPresent());
+            shortUrl = buildShortUrl(id, originalUrl, userUuid, now, lifetimeHours, clicksLimit);
+            saved = urlRepository.saveIfAbsent(shortUrl);
+            if (!saved && urlGenerator.isDerivedFromId()) id = urlRepository.getNextUrlId();
+        } while (!saved);
 
-        // Вычисляем время жизни ссылки
-        int lifetimeHours = customLifetimeHours != null ?
-                Math.min(customLifetimeHours, config.getDefaultLifetimeHours()) :
-                config.getDefaultLifetimeHours();
+        expirySweeper.schedule(shortUrl);
+        indexUserLink(shortUrl);
+        return shortUrl;
+    }
 
-        // Вычисляем лимит кликов
-        int clicksLimit = customClicksLimit != null ?
-                Math.max(customClicksLimit, config.getDefaultClicksLimit()) :
-                config.getDefaultClicksLimit();
+    // Общий экземпляр адреса для новой ссылки; учитывается один раз на ссылку, а не на попытку сохранения
+    private String share(String originalUrl) {
+        return originalUrls != null ? originalUrls.acquire(originalUrl) : originalUrl;
+    }
+
+    // Режим url.dedup.per.user: действующая ссылка пользователя на тот же адрес, null — нужно создать новую
+    // Ссылка с другими явно заданными временем жизни или лимитом не подходит: пользователь просит другие условия
+    private ShortUrl findReusable(UUID userUuid, String originalUrl, Integer customLifetimeHours, Integer customClicksLimit) {
+        if (userLinks == null) return null;
+        UserUrl key = new UserUrl(userUuid, OriginalUrlTable.normalize(originalUrl));
+        String shortPath = userLinks.get(key);
+        if (shortPath == null) return null;
+        ShortUrl shortUrl = urlRepository.findByPath(shortPath).orElse(null);
+        if (shortUrl == null || !shortUrl.isActive() || !shortUrl.getExpiresAt().isAfter(LocalDateTime.now())
+                || !shortUrl.getUserUuid().equals(userUuid)) {
+            // Ссылка исчерпала лимит или устарела: следующая созданная займёт её место в индексе
+            userLinks.remove(key, shortPath);
+            return null;
+        }
+        if (customLifetimeHours != null
+                && Duration.between(shortUrl.getCreatedAt(), shortUrl.getExpiresAt()).toHours() != lifetimeHoursOf(customLifetimeHours)) {
+            return null;
+        }
+        if (customClicksLimit != null && shortUrl.getClicksLimit() != clicksLimitOf(customClicksLimit)) return null;
+        reused.increment();
+        return shortUrl;
+    }
+
+    private void indexUserLink(ShortUrl shortUrl) {
+        if (userLinks == null) return;
+        userLinks.put(new UserUrl(shortUrl.getUserUuid(), OriginalUrlTable.normalize(shortUrl.getOriginalUrl())),
+                shortUrl.getShortPath());
+    }
+
+    // Ссылка удалена: освобождаем её адрес в таблице и место в индексе пользователя
+    private void forget(ShortUrl shortUrl) {
+        if (originalUrls != null) originalUrls.release(shortUrl.getOriginalUrl());
+        if (userLinks != null) {
+            userLinks.remove(new UserUrl(shortUrl.getUserUuid(), OriginalUrlTable.normalize(shortUrl.getOriginalUrl())),
+                    shortUrl.getShortPath());
+        }
+    }
+
+    private record UserUrl(UUID userUuid, String originalUrl) {
+    }
+
+    @Override
+    public List<ShortUrl> createShortUrls(List<String> originalUrls, UUID userUuid, Integer customLifetimeHours, Integer customClicksLimit) {
+        IntStream.range(0, originalUrls.size()).parallel()
+                .filter(i -> !isValidUrl(originalUrls.get(i)))
+                .findFirst()
+                .ifPresent(i -> {
+                    throw new IllegalArgumentException("Неверный формат URL: " + originalUrls.get(i));
+                });
+        List<ShortUrl> created = new ArrayList<>(originalUrls.size());
+        for (int from = 0; from < originalUrls.size(); from += config.getUrlBatchSize()) {
+            int to = Math.min(from + config.getUrlBatchSize(), originalUrls.size());
+            created.addAll(insertBatch(originalUrls.subList(from, to), userUuid, customLifetimeHours, customClicksLimit));
+        }
+        return created;
+    }
+
+    @Override
+    public long importShortUrls(BufferedReader source, UUID userUuid, Integer customLifetimeHours, Integer customClicksLimit,
+                                Consumer<ShortUrl> onCreated) throws IOException {
+        List<String> urls = new ArrayList<>(config.getUrlBatchSize());
+        long read = 0;
+        long created = 0;
+        String line;
+        while ((line = source.readLine()) != null) {
+            String url = line.strip();
+            // Допускается и файл CSV из одного столбца с адресами в кавычках
+            if (url.length() >= 2 && url.startsWith("\"") && url.endsWith("\"")) url = url.substring(1, url.length() - 1);
+            if (url.isEmpty() || url.startsWith("#")) continue;
+            urls.add(url);
+            read++;
+            if (urls.size() == config.getUrlBatchSize()) {
+                created += importBatch(urls, userUuid, customLifetimeHours, customClicksLimit, onCreated);
+                urls.clear();
+            }
+        }
+        created += importBatch(urls, userUuid, customLifetimeHours, customClicksLimit, onCreated);
+        System.out.printf("Импорт завершён: создано ссылок %d, пропущено неверных адресов %d%n", created, read - created);
+        return created;
+    }
+
+    private int importBatch(List<String> urls, UUID userUuid, Integer customLifetimeHours, Integer customClicksLimit,
+                            Consumer<ShortUrl> onCreated) {
+        boolean[] valid = new boolean[urls.size()];
+        IntStream.range(0, urls.size()).parallel().forEach(i -> valid[i] = isValidUrl(urls.get(i)));
+        List<String> batch = new ArrayList<>(urls.size());
+        for (int i = 0; i < valid.length; i++) {
+            if (valid[i]) {
+                batch.add(urls.get(i));
+            } else {
+                System.out.println("Пропущен неверный URL: " + urls.get(i));
+            }
+        }
+        List<ShortUrl> created = insertBatch(batch, userUuid, customLifetimeHours, customClicksLimit);
+        created.forEach(onCreated);
+        return created.size();
+    }
+
+    // id выдаются одним обращением к репозиторию, вся пачка сохраняется за один проход.
+    // Пути, оказавшиеся занятыми, генерируются заново и сохраняются следующим проходом.
+    // В режиме url.dedup.per.user адрес, для которого у пользователя уже есть ссылка (в том числе
+    // из этой же пачки), получает её вместо новой
+    private List<ShortUrl> insertBatch(List<String> originalUrls, UUID userUuid, Integer customLifetimeHours, Integer customClicksLimit) {
+        if (originalUrls.isEmpty()) return List.of();
+        int lifetimeHours = lifetimeHoursOf(customLifetimeHours);
+        int clicksLimit = clicksLimitOf(customClicksLimit);
+        long firstId = urlRepository.getNextUrlIds(originalUrls.size());
+        LocalDateTime now = LocalDateTime.now();
+        ShortUrl[] created = new ShortUrl[originalUrls.size()];
+        // Позиция первого такого же адреса в пачке, -1 — адрес в пачке впервые
+        int[] sameAs = new int[created.length];
+        Arrays.fill(sameAs, -1);
+        Map<String, Integer> firstPositions = userLinks != null ? new HashMap<>() : null;
+        boolean[] isFresh = new boolean[created.length];
+        List<ShortUrl> fresh = new ArrayList<>(created.length);
+        for (int i = 0; i < created.length; i++) {
+            String originalUrl = originalUrls.get(i);
+            if (firstPositions != null) {
+                Integer first = firstPositions.putIfAbsent(OriginalUrlTable.normalize(originalUrl), i);
+                if (first != null) {
+                    sameAs[i] = first;
+                    continue;
+                }
+                created[i] = findReusable(userUuid, originalUrl, customLifetimeHours, customClicksLimit);
+                if (created[i] != null) continue;
+            }
+            created[i] = buildShortUrl(firstId + i, share(originalUrl), userUuid, now, lifetimeHours, clicksLimit);
+            fresh.add(created[i]);
+            isFresh[i] = true;
+        }
+        List<ShortUrl> rejected = urlRepository.saveAllIfAbsent(fresh);
+        // id ссылки мог смениться при сборке (чужой путь в кластере), поэтому позиции ищутся по самим объектам
+        Map<ShortUrl, Integer> positions = new IdentityHashMap<>();
+        if (!rejected.isEmpty()) {
+            for (int i = 0; i < created.length; i++) {
+                if (created[i] != null) positions.put(created[i], i);
+            }
+        }
+        while (!rejected.isEmpty()) {
+            List<ShortUrl> retry = new ArrayList<>(rejected.size());
+            for (ShortUrl shortUrl : rejected) {
+                long id = urlGenerator.isDerivedFromId() ? urlRepository.getNextUrlId() : shortUrl.getId();
+                ShortUrl next = buildShortUrl(id, shortUrl.getOriginalUrl(), userUuid, now, lifetimeHours, clicksLimit);
+                int position = positions.remove(shortUrl);
+                positions.put(next, position);
+                created[position] = next;
+                retry.add(next);
+            }
+            rejected = urlRepository.saveAllIfAbsent(retry);
+        }
+        for (int i = 0; i < created.length; i++) {
+            if (isFresh[i]) {
+                expirySweeper.schedule(created[i]);
+                indexUserLink(created[i]);
+            } else if (sameAs[i] >= 0) {
+                created[i] = created[sameAs[i]];
+            }
+        }
+        return Arrays.asList(created);
+    }
 
-        ShortUrl shortUrl = ShortUrl.builder()
-                .id(urlRepository.getNextUrlId())
+    private ShortUrl buildShortUrl(long id, String originalUrl, UUID userUuid, LocalDateTime now, int lifetimeHours, int clicksLimit) {
+        String shortPath = urlGenerator.generatePath(id);
+        // В кластере путь режима sequence может принадлежать другому узлу: такой id пропускаем
+        for (int attempt = 1; !urlGenerator.isOwned(shortPath); attempt++) {
+            if (attempt == UrlGeneratorService.MAX_OWNED_ATTEMPTS) {
+                throw new IllegalStateException("Узлу не принадлежит ни один короткий путь");
+            }
+            id = urlRepository.getNextUrlId();
+            shortPath = urlGenerator.generatePath(id);
+        }
+        return ShortUrl.builder()
+                .id(id)
                 .originalUrl(originalUrl)
                 .shortPath(shortPath)
                 .userUuid(userUuid)
-                .createdAt(LocalDateTime.now())
-                .expiresAt(LocalDateTime.now().plusHours(lifetimeHours))
+                .createdAt(now)
+                .expiresAt(now.plusHours(lifetimeHours))
                 .clicksLimit(clicksLimit)
                 .clicksCounter(0)
                 .isActive(true)
                 .build();
+    }
 
-        urlRepository.save(shortUrl);
-        return shortUrl;
+    // Вычисляем время жизни ссылки
+    private int lifetimeHoursOf(Integer customLifetimeHours) {
+        return customLifetimeHours != null ?
+                Math.min(customLifetimeHours, config.getDefaultLifetimeHours()) :
+                config.getDefaultLifetimeHours();
+    }
+
+    // Вычисляем лимит кликов
+    private int clicksLimitOf(Integer customClicksLimit) {
+        return customClicksLimit != null ?
+                Math.max(customClicksLimit, config.getDefaultClicksLimit()) :
+                config.getDefaultClicksLimit();
     }
 
     @Override
     public void clickShortUrl(String shortPath) {
-        ShortUrl shortUrl = urlRepository.findByPath(shortPath).get();
-        if (isShortUrlValid(shortPath, false)) {
-            int clickCounter = shortUrl.getClicksCounter();
-            shortUrl.setClicksCounter(++clickCounter);
-            urlRepository.save(shortUrl);
-        } else return;
+        Optional<String> originalUrl = followShortUrl(shortPath);
+        if (originalUrl.isEmpty()) return;
         try {
-            Desktop.getDesktop().browse(new URI(shortUrl.getOriginalUrl()));
+            Desktop.getDesktop().browse(new URI(originalUrl.get()));
             System.out.println("Ссылка открыта в браузере");
         } catch (URISyntaxException | IOException e) {
             System.out.println("Ошибка открытия ссылки: " + e.getMessage());
         }
-        isShortUrlValid(shortPath, true);
+    }
+
+    @Override
+    public Optional<String> followShortUrl(String shortPath) {
+        Optional<ShortUrl> found = urlRepository.findByPath(shortPath);
+        if (found.isEmpty()) return Optional.empty();
+        ShortUrl shortUrl = found.get();
+        if (!isShortUrlValid(shortUrl, false)) return Optional.empty();
+        // Лимит мог быть исчерпан параллельными кликами уже после проверки
+        if (!clickCounter.tryClick(shortUrl)) {
+            isShortUrlLimitExceeded(shortUrl, false);
+            return Optional.empty();
+        }
+        clickPipeline.publish(new RedirectTarget(shortUrl, clickCounter.counterOf(shortUrl), clickAnalytics.historyOf(shortUrl)));
+        // Деактивируем ссылку сразу, если этот клик был последним
+        isShortUrlLimitExceeded(shortUrl, true);
+        return Optional.of(shortUrl.getOriginalUrl());
+    }
+
+    @Override
+    public RedirectTarget resolveRedirect(String shortPath) {
+        RedirectTarget target = redirectTargets.get(shortPath);
+        // Истёкшие ссылки и исчерпанный лимит обрабатываются медленным путём с удалением/деактивацией
+        if (target == null || System.currentTimeMillis() >= target.getExpiresAtMillis()) {
+            return resolveRedirectSlow(shortPath);
+        }
+        if (!target.isActive()) return null;
+        LongAdder counter = target.getClicksCounter();
+        if (counter.sum() >= target.getClicksLimit()) {
+            return resolveRedirectSlow(shortPath);
+        }
+        counter.increment();
+        clickPipeline.publish(target);
+        if (counter.sum() >= target.getClicksLimit()) {
+            // Ссылку могли удалить с момента подготовки перехода
+            urlRepository.findByPath(shortPath).ifPresent(shortUrl -> isShortUrlLimitExceeded(shortUrl, true));
+        }
+        return target;
+    }
+
+    // Пишется абсолютное значение счётчика, поэтому повторный или запоздалый сброс ничего не портит.
+    // Сброшенный (при изменении лимита) или удалённый счётчик не пишется, чтобы не затереть новое значение.
+    // Клики попадают в статистику с временем сброса, то есть с опозданием не больше интервала сброса
+    private void flushClicks(RedirectTarget target, int clicks) {
+        target.getClickHistory().record(clicks, System.currentTimeMillis());
+        BiConsumer<String, Integer> forwarder = clickForwarder;
+        if (forwarder != null) {
+            forwarder.accept(target.getShortPath(), clicks);
+            return;
+        }
+        LongAdder counter = target.getClicksCounter();
+        if (clickCounter.isCurrent(target.getId(), counter)) {
+            urlRepository.updateClicksCounter(target.getShortPath(), (int) counter.sum());
+        }
+    }
+
+    private RedirectTarget resolveRedirectSlow(String shortPath) {
+        redirectTargets.remove(shortPath);
+        if (followShortUrl(shortPath).isEmpty()) {
+            cacheInactive(shortPath);
+            return null;
+        }
+        ShortUrl shortUrl = urlRepository.findByPath(shortPath).orElse(null);
+        if (shortUrl == null) return null;
+        RedirectTarget target = new RedirectTarget(shortUrl, clickCounter.counterOf(shortUrl), clickAnalytics.historyOf(shortUrl));
+        if (shortUrl.isActive()) redirectTargets.put(shortPath, target);
+        return target;
+    }
+
+    // Боты и старые закладки продолжают ходить по исчерпанным ссылкам: отказ по ним кэшируется до изменения ссылки.
+    // Несуществующие пути не кэшируются, иначе перебор случайных путей раздувал бы кэш
+    private void cacheInactive(String shortPath) {
+        ShortUrl shortUrl = urlRepository.findByPath(shortPath).orElse(null);
+        if (shortUrl == null || shortUrl.isActive()) return;
+        RedirectTarget inactive = new RedirectTarget(shortUrl, clickCounter.counterOf(shortUrl), clickAnalytics.historyOf(shortUrl));
+        redirectTargets.put(shortPath, inactive);
+        // Ссылку могли снова включить (новый лимит) между проверкой и записью в кэш
+        if (urlRepository.findByPath(shortPath).map(ShortUrl::isActive).orElse(true)) redirectTargets.remove(shortPath, inactive);
     }
 
     @Override
     public UUID getShortUrlOwner(String shortPath) {
-        return findByPath(shortPath).get().getUserUuid();
+        return findByPath(shortPath).map(ShortUrl::getUserUuid).orElse(null);
     }
 
     @Override
@@ -99,21 +493,52 @@ public class UrlServiceImpl implements UrlService {
     @Override
     public Optional<ShortUrl> findByPath(String shortPath) {
         Optional<ShortUrl> shortUrl = urlRepository.findByPath(shortPath);
-        if (shortUrl.isPresent()) isShortUrlValid(shortPath, true);
+        shortUrl.ifPresent(found -> isShortUrlValid(found, true));
         return shortUrl;
     }
 
     @Override
     public List<ShortUrl> findAllUrlsByUuid(UUID userUuid) {
-        return urlRepository.findAllUrlsByUserUuid(userUuid).stream()
-                .filter(shortUrl -> !this.isShortUrlExpired(shortUrl.getShortPath(), true))
+        return withoutExpired(urlRepository.findAllUrlsByUserUuid(userUuid));
+    }
+
+    @Override
+    public List<ShortUrl> findUrlsByUuid(UUID userUuid, int offset, int limit) {
+        return withoutExpired(urlRepository.findUrlsByUserUuid(userUuid, offset, limit));
+    }
+
+    @Override
+    public ClickStats getClickStats(String shortPath) {
+        return urlRepository.findByPath(shortPath).map(clickAnalytics::statsOf).orElse(ClickStats.EMPTY);
+    }
+
+    @Override
+    public ClickStats getUserClickStats(UUID userUuid) {
+        return clickAnalytics.statsOf(urlRepository.findAllUrlsByUserUuid(userUuid));
+    }
+
+    @Override
+    public long getExpiredUrlsCount() {
+        return expirySweeper.getEvictedCount();
+    }
+
+    @Override
+    public long getDeactivatedUrlsCount() {
+        return deactivated.sum();
+    }
+
+    // Основную работу делает ExpirySweeper; здесь только ссылки, истёкшие после его последнего прохода
+    private List<ShortUrl> withoutExpired(List<ShortUrl> urls) {
+        LocalDateTime now = LocalDateTime.now();
+        return urls.stream()
+                .filter(shortUrl -> shortUrl.getExpiresAt().isAfter(now) || !isShortUrlExpired(shortUrl, true))
                 .toList();
     }
 
     @Override
     public String getShortUrlStatus(ShortUrl shortUrl) {
         String delimiter = "\t|\t";
-        int clicksLeft = shortUrl.getClicksLimit() - shortUrl.getClicksCounter();
+        int clicksLeft = shortUrl.getClicksLimit() - clickCounter.getClicks(shortUrl);
         Duration lifeLeft = Duration.between(LocalDateTime.now(), shortUrl.getExpiresAt());
         long days = lifeLeft.toDays();
         long hours = lifeLeft.minusDays(days).toHours();
@@ -123,47 +548,78 @@ public class UrlServiceImpl implements UrlService {
                 + (shortUrl.isActive() ? "Активна" : "Неактивна") + delimiter
                 + "Осталось кликов: " + clicksLeft + delimiter
                 + "Осталось время жизни: " + lifeLeftFormat + delimiter
+                + clickAnalytics.statsOf(shortUrl) + delimiter
                 + "Оригинальная ссылка: " + shortUrl.getOriginalUrl();
     }
 
     @Override
     public void updateUrlClicksLimit(String shortPath, int newLimit) {
-        if (isShortUrlExpired(shortPath, false)) return;
-        ShortUrl url = findByPath(shortPath).get();
+        ShortUrl url = urlRepository.findByPath(shortPath).orElse(null);
+        if (url == null || isShortUrlExpired(url, false)) return;
         url.setClicksLimit(newLimit);
         url.setClicksCounter(0);
         url.setActive(true);
         urlRepository.save(url);
-        isShortUrlValid(shortPath, true);
+        clickCounter.reset(url);
+        redirectTargets.remove(shortPath);
+        isShortUrlValid(url, true);
     }
 
     @Override
     public void updateUrlLifeTime(String shortPath, int hours) {
-        if (isShortUrlExpired(shortPath, false)) return;
-        ShortUrl url = findByPath(shortPath).get();
+        ShortUrl url = urlRepository.findByPath(shortPath).orElse(null);
+        if (url == null || isShortUrlExpired(url, false)) return;
         url.setExpiresAt(LocalDateTime.now().plusHours(hours));
         urlRepository.save(url);
-        isShortUrlValid(shortPath, true);
+        expirySweeper.schedule(url);
+        redirectTargets.remove(shortPath);
+        isShortUrlValid(url, true);
     }
 
+    // Удаление идёт через deleteAll, чтобы адрес освобождался только у действительно удалённой ссылки,
+    // даже если её одновременно удаляют пользователь и фоновая очистка
     @Override
     public void deleteShortUrl(String shortPath) {
-        urlRepository.delete(shortPath);
+        deleteShortUrls(List.of(shortPath));
+    }
+
+    @Override
+    public int deleteShortUrls(Collection<String> shortPaths) {
+        for (String shortPath : shortPaths) {
+            redirectTargets.remove(shortPath);
+            expirySweeper.cancel(shortPath);
+        }
+        List<ShortUrl> deleted = urlRepository.deleteAll(shortPaths);
+        for (ShortUrl shortUrl : deleted) {
+            clickCounter.remove(shortUrl);
+            clickAnalytics.remove(shortUrl);
+            forget(shortUrl);
+        }
+        return deleted.size();
+    }
+
+    // Вызывается из ExpirySweeper; ссылку могли продлить или удалить после того, как она попала в очередь
+    private void expireShortUrl(String shortPath) {
+        urlRepository.findByPath(shortPath)
+                .filter(shortUrl -> !shortUrl.getExpiresAt().isAfter(LocalDateTime.now()))
+                .ifPresent(shortUrl -> deleteShortUrl(shortPath));
     }
 
-    private boolean isShortUrlExpired(String shortPath, boolean silent) {
-        if (getShortUrl(shortPath).get().getExpiresAt().isAfter(LocalDateTime.now())) {
+    // Проверки получают уже найденную ссылку, а не ищут её заново: между двумя поисками
+    // ссылку может удалить фоновая очистка (ExpirySweeper)
+    private boolean isShortUrlExpired(ShortUrl shortUrl, boolean silent) {
+        if (shortUrl.getExpiresAt().isAfter(LocalDateTime.now())) {
             return false;
         } else {
             silent = false; // Лучше всегда уведомлять об удалении ссылки
-            if (!silent) System.out.println("Ссылка '" + getFullShortUrl(shortPath) + "' устарела и была удалена");
-            deleteShortUrl(shortPath);
+            if (!silent) System.out.println("Ссылка '" + getFullShortUrl(shortUrl.getShortPath()) + "' устарела и была удалена");
+            deleteShortUrl(shortUrl.getShortPath());
             return true;
         }
     }
 
-    private boolean isShortUrlActive(String shortPath, boolean silent) {
-        if (getShortUrl(shortPath).get().isActive()) {
+    private boolean isShortUrlActive(ShortUrl shortUrl, boolean silent) {
+        if (shortUrl.isActive()) {
             return true;
         } else {
             if (!silent) System.out.println("Ссылка не активна");
@@ -171,11 +627,18 @@ public class UrlServiceImpl implements UrlService {
         }
     }
 
-    private boolean isShortUrlLimitExceeded(String shortPath, boolean silent) {
-        ShortUrl shortUrl = getShortUrl(shortPath).get();
-        if (shortUrl.getClicksCounter() >= shortUrl.getClicksLimit()) {
-            shortUrl.setActive(false);
-            urlRepository.save(shortUrl);
+    private boolean isShortUrlLimitExceeded(ShortUrl shortUrl, boolean silent) {
+        int clicks = clickCounter.getClicks(shortUrl);
+        if (clicks >= shortUrl.getClicksLimit()) {
+            // Деактивация сохраняется синхронно вместе с точным счётчиком, не дожидаясь фонового сброса,
+            // и только один раз: повторные переходы по неактивной ссылке не пишут в журнал и журнал репликации
+            if (shortUrl.isActive()) {
+                shortUrl.setClicksCounter(clicks);
+                shortUrl.setActive(false);
+                urlRepository.save(shortUrl);
+                deactivated.increment();
+                redirectTargets.remove(shortUrl.getShortPath());
+            }
             if (!silent) System.out.println("Ссылка достигла или уже превышает лимит кликов");
             return true;
         }
@@ -184,17 +647,22 @@ public class UrlServiceImpl implements UrlService {
 
     // Метод проверяет доступность ссылки и сразу обновляет данные по ней
     // silent - молчаливый режим, чтобы не падало слишком много уведомлений на одно и то же событие
-    private boolean isShortUrlValid(String shortPath, boolean silent) {
-        return (isShortUrlActive(shortPath, silent)
-                & !isShortUrlLimitExceeded(shortPath, silent)
-                & !isShortUrlExpired(shortPath, silent));
+    private boolean isShortUrlValid(ShortUrl shortUrl, boolean silent) {
+        return (isShortUrlActive(shortUrl, silent)
+                & !isShortUrlLimitExceeded(shortUrl, silent)
+                & !isShortUrlExpired(shortUrl, silent));
     }
 
     private void validateUrl(String url) {
+        if (!isValidUrl(url)) throw new IllegalArgumentException("Неверный формат URL");
+    }
+
+    private static boolean isValidUrl(String url) {
         try {
             new URL(url);
+            return true;
         } catch (MalformedURLException e) {
-            throw new IllegalArgumentException("Неверный формат URL");
+            return false;
         }
     }
 }
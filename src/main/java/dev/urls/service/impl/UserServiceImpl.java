@@ -21,7 +21,9 @@ public class UserServiceImpl implements UserService {
                 .username(username)
                 .build();
 
-        userRepository.save(user);
+        if (!userRepository.saveIfAbsent(user)) {
+            throw new IllegalArgumentException("Имя пользователя уже занято");
+        }
         return user;
     }
 
@@ -0,0 +1,207 @@
+package dev.urls.storage;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Потоковая выгрузка и загрузка ссылок и пользователей в NDJSON (см. NdjsonCodec).
+// Выгрузка: записи идут порциями по CHUNK_RECORDS, порции кодируются параллельно и пишутся в канал по порядку.
+// Загрузка: файл читается блоками по BLOCK_SIZE до последнего перевода строки, блоки разбираются
+// и сохраняются параллельно. В обоих случаях в работе не больше 2 порций на поток, поэтому память
+// ограничена независимо от объёма данных.
+public class DataTransfer {
+    private static final int CHUNK_RECORDS = 4096;
+    private static final int BLOCK_SIZE = 4 << 20;
+
+    private final UrlRepository urls;
+    private final UserRepository users;
+    private final int threads;
+
+    public DataTransfer(UrlRepository urls, UserRepository users, int threads) {
+        this.urls = urls;
+        this.users = users;
+        this.threads = threads;
+    }
+
+    // Возвращает число выгруженных записей
+    public long exportTo(Path file) throws IOException {
+        ExecutorService encoders = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Pipeline<ByteBuffer> pipeline = new Pipeline<>(encoders, 2 * threads, buffer -> {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            });
+            List<User> userChunk = new ArrayList<>(CHUNK_RECORDS);
+            List<ShortUrl> urlChunk = new ArrayList<>(CHUNK_RECORDS);
+            long[] records = {0};
+            users.forEach(user -> {
+                userChunk.add(user);
+                if (userChunk.size() == CHUNK_RECORDS) {
+                    records[0] += userChunk.size();
+                    pipeline.submit(encodeUsers(new ArrayList<>(userChunk)));
+                    userChunk.clear();
+                }
+            });
+            records[0] += userChunk.size();
+            pipeline.submit(encodeUsers(userChunk));
+            urls.forEach(shortUrl -> {
+                urlChunk.add(shortUrl);
+                if (urlChunk.size() == CHUNK_RECORDS) {
+                    records[0] += urlChunk.size();
+                    pipeline.submit(encodeUrls(new ArrayList<>(urlChunk)));
+                    urlChunk.clear();
+                }
+            });
+            records[0] += urlChunk.size();
+            pipeline.submit(encodeUrls(urlChunk));
+            pipeline.finish();
+            channel.force(false);
+            return records[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            encoders.shutdownNow();
+        }
+    }
+
+    // Пути, уже занятые в хранилище, пропускаются. Возвращает число загруженных записей
+    public long importFrom(Path file) throws IOException {
+        ExecutorService loaders = Executors.newFixedThreadPool(threads);
+        long[] records = {0};
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Pipeline<Integer> pipeline = new Pipeline<>(loaders, 2 * threads, loaded -> records[0] += loaded);
+            ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            boolean eof = false;
+            while (!eof) {
+                while (block.hasRemaining()) {
+                    if (channel.read(block) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                block.flip();
+                int end = eof ? block.limit() : lastLineEnd(block);
+                if (end == 0 && !eof) throw new IOException("Строка длиннее " + BLOCK_SIZE + " байт");
+                byte[] lines = new byte[end];
+                block.get(lines);
+                block.compact();
+                pipeline.submit(() -> load(lines));
+            }
+            pipeline.finish();
+            return records[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    private static Callable<ByteBuffer> encodeUsers(List<User> chunk) {
+        return () -> {
+            StringBuilder out = new StringBuilder(chunk.size() * 96);
+            for (User user : chunk) NdjsonCodec.writeUser(out, user);
+            return ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private static Callable<ByteBuffer> encodeUrls(List<ShortUrl> chunk) {
+        return () -> {
+            StringBuilder out = new StringBuilder(chunk.size() * 256);
+            for (ShortUrl shortUrl : chunk) NdjsonCodec.writeShortUrl(out, shortUrl);
+            return ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private int load(byte[] lines) {
+        List<ShortUrl> shortUrls = new ArrayList<>();
+        int loaded = 0;
+        int start = 0;
+        for (int i = 0; i <= lines.length; i++) {
+            if (i < lines.length && lines[i] != '\n') continue;
+            if (i > start) {
+                String line = new String(lines, start, i - start, StandardCharsets.UTF_8);
+                Object record;
+                try {
+                    record = line.isBlank() ? null : NdjsonCodec.read(line);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Неверная запись '" + line + "': " + e.getMessage(), e);
+                }
+                if (record instanceof User user) {
+                    users.save(user);
+                    loaded++;
+                } else if (record instanceof ShortUrl shortUrl) {
+                    shortUrls.add(shortUrl);
+                }
+            }
+            start = i + 1;
+        }
+        return loaded + shortUrls.size() - urls.saveAllIfAbsent(shortUrls).size();
+    }
+
+    private static int lastLineEnd(ByteBuffer block) {
+        for (int i = block.limit() - 1; i >= 0; i--) {
+            if (block.get(i) == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    @FunctionalInterface
+    private interface Sink<T> {
+        void accept(T result) throws IOException;
+    }
+
+    // Порции обрабатываются параллельно, а результаты забираются в порядке отправки.
+    // Если в работе уже maxInFlight порций, отправка сначала дожидается самой старой
+    private static final class Pipeline<T> {
+        private final ExecutorService executor;
+        private final int maxInFlight;
+        private final Sink<T> sink;
+        private final ArrayDeque<Future<T>> inFlight = new ArrayDeque<>();
+
+        Pipeline(ExecutorService executor, int maxInFlight, Sink<T> sink) {
+            this.executor = executor;
+            this.maxInFlight = maxInFlight;
+            this.sink = sink;
+        }
+
+        void submit(Callable<T> task) {
+            if (inFlight.size() == maxInFlight) drainOldest();
+            inFlight.add(executor.submit(task));
+        }
+
+        void finish() {
+            while (!inFlight.isEmpty()) drainOldest();
+        }
+
+        private void drainOldest() {
+            try {
+                sink.accept(inFlight.poll().get());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
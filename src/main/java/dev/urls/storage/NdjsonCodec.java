@@ -0,0 +1,240 @@
+package dev.urls.storage;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+// Представление ссылок и пользователей в NDJSON: по одному плоскому JSON-объекту в строке.
+// Время пишется в epoch-миллисекундах UTC, как и в журнале.
+//   {"type":"user","uuid":"...","username":"..."}
+//   {"type":"url","id":1,"path":"...","url":"...","owner":"...","createdAt":...,"expiresAt":...,
+//    "clicksLimit":3,"clicks":0,"active":true}
+public final class NdjsonCodec {
+    private NdjsonCodec() {
+    }
+
+    public static void writeUser(StringBuilder out, User user) {
+        out.append("{\"type\":\"user\",\"uuid\":\"").append(user.getUUID()).append("\",\"username\":");
+        writeString(out, user.getUsername());
+        out.append("}\n");
+    }
+
+    public static void writeShortUrl(StringBuilder out, ShortUrl shortUrl) {
+        out.append("{\"type\":\"url\",\"id\":").append(shortUrl.getId()).append(",\"path\":");
+        writeString(out, shortUrl.getShortPath());
+        out.append(",\"url\":");
+        writeString(out, shortUrl.getOriginalUrl());
+        out.append(",\"owner\":\"").append(shortUrl.getUserUuid())
+                .append("\",\"createdAt\":").append(toMillis(shortUrl.getCreatedAt()))
+                .append(",\"expiresAt\":").append(toMillis(shortUrl.getExpiresAt()))
+                .append(",\"clicksLimit\":").append(shortUrl.getClicksLimit())
+                .append(",\"clicks\":").append(shortUrl.getClicksCounter())
+                .append(",\"active\":").append(shortUrl.isActive())
+                .append("}\n");
+    }
+
+    // Возвращает User или ShortUrl. Поля разбираются сразу в значения, без промежуточной карты строк
+    public static Object read(String line) {
+        Cursor in = new Cursor(line);
+        String type = null;
+        UUID uuid = null;
+        String username = null;
+        Long id = null;
+        String path = null;
+        String url = null;
+        UUID owner = null;
+        LocalDateTime createdAt = null;
+        LocalDateTime expiresAt = null;
+        Integer clicksLimit = null;
+        int clicks = 0;
+        boolean active = true;
+
+        in.expect('{');
+        if (in.peek() == '}') {
+            in.position++;
+        } else {
+            do {
+                String key = in.readString();
+                in.expect(':');
+                switch (key) {
+                    case "type" -> type = in.readString();
+                    case "uuid" -> uuid = UUID.fromString(in.readString());
+                    case "username" -> username = in.readString();
+                    case "id" -> id = in.readLong();
+                    case "path" -> path = in.readString();
+                    case "url" -> url = in.readString();
+                    case "owner" -> owner = UUID.fromString(in.readString());
+                    case "createdAt" -> createdAt = toTime(in.readLong());
+                    case "expiresAt" -> expiresAt = toTime(in.readLong());
+                    case "clicksLimit" -> clicksLimit = Math.toIntExact(in.readLong());
+                    case "clicks" -> clicks = Math.toIntExact(in.readLong());
+                    case "active" -> active = !"false".equals(in.readLiteral());
+                    default -> in.skipValue();
+                }
+            } while (in.next() == ',');
+        }
+
+        if ("user".equals(type)) {
+            return new User(required(uuid, "uuid"), username);
+        }
+        if ("url".equals(type)) {
+            return ShortUrl.builder()
+                    .id(required(id, "id"))
+                    .shortPath(required(path, "path"))
+                    .originalUrl(required(url, "url"))
+                    .userUuid(required(owner, "owner"))
+                    .createdAt(required(createdAt, "createdAt"))
+                    .expiresAt(expiresAt)
+                    .clicksLimit(required(clicksLimit, "clicksLimit"))
+                    .clicksCounter(clicks)
+                    .isActive(active)
+                    .build();
+        }
+        throw new IllegalArgumentException("Неизвестный тип записи: " + type);
+    }
+
+    private static <T> T required(T value, String name) {
+        if (value == null) throw new IllegalArgumentException("Нет поля " + name);
+        return value;
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static String toMillis(LocalDateTime time) {
+        return time != null ? String.valueOf(time.toInstant(ZoneOffset.UTC).toEpochMilli()) : "null";
+    }
+
+    private static LocalDateTime toTime(Long millis) {
+        return millis != null ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+
+    // Разбор плоского объекта: значения — строки, числа, true/false/null
+    private static final class Cursor {
+        private final String line;
+        private int position;
+
+        Cursor(String line) {
+            this.line = line;
+        }
+
+        char peek() {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) position++;
+            if (position >= line.length()) throw new IllegalArgumentException("Неожиданный конец строки");
+            return line.charAt(position);
+        }
+
+        char next() {
+            char c = peek();
+            position++;
+            if (c != ',' && c != '}') throw new IllegalArgumentException("Ожидалась ',' или '}' в позиции " + (position - 1));
+            return c;
+        }
+
+        void expect(char expected) {
+            if (peek() != expected) throw new IllegalArgumentException("Ожидался '" + expected + "' в позиции " + position);
+            position++;
+        }
+
+        // null для литерала null
+        String readString() {
+            if (peek() != '"') {
+                String literal = readLiteral();
+                if (literal != null) throw new IllegalArgumentException("Ожидалась строка, а не " + literal);
+                return null;
+            }
+            int start = ++position;
+            int end = start;
+            while (end < line.length() && line.charAt(end) != '"' && line.charAt(end) != '\\') end++;
+            if (end < line.length() && line.charAt(end) == '"') {
+                // Без экранированных символов строка берётся как есть
+                position = end + 1;
+                return line.substring(start, end);
+            }
+            StringBuilder value = new StringBuilder().append(line, start, end);
+            int i = end;
+            while (true) {
+                if (i >= line.length()) throw new IllegalArgumentException("Незакрытая строка");
+                char c = line.charAt(i++);
+                if (c == '"') break;
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = line.charAt(i++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        value.append((char) Integer.parseInt(line, i, i + 4, 16));
+                        i += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+            position = i;
+            return value.toString();
+        }
+
+        // null для литерала null
+        Long readLong() {
+            peek();
+            int start = position;
+            int end = literalEnd();
+            if (line.startsWith("null", start) && end - start == 4) return null;
+            return Long.parseLong(line, start, end, 10);
+        }
+
+        String readLiteral() {
+            peek();
+            int start = position;
+            String literal = line.substring(start, literalEnd());
+            return "null".equals(literal) ? null : literal;
+        }
+
+        void skipValue() {
+            if (peek() == '"') {
+                readString();
+            } else {
+                readLiteral();
+            }
+        }
+
+        private int literalEnd() {
+            int end = position;
+            while (end < line.length() && ",}".indexOf(line.charAt(end)) < 0 && !Character.isWhitespace(line.charAt(end))) end++;
+            position = end;
+            return end;
+        }
+    }
+}
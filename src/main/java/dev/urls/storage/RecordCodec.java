@@ -0,0 +1,194 @@
+package dev.urls.storage;
+
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Бинарное представление записей журнала и снимков
+public final class RecordCodec {
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    // Абсолютное значение счётчика кликов, а не приращение, чтобы запись была идемпотентной
+    public record ClicksUpdate(String shortPath, int clicksCounter) {
+    }
+
+    private RecordCodec() {
+    }
+
+    public static void write(DataOutput out, WalRecordType type, Object payload) throws IOException {
+        switch (type) {
+            case URL_SAVE -> writeShortUrl(out, (ShortUrl) payload);
+            case URL_DELETE -> writeString(out, (String) payload);
+            case URL_CLICKS -> {
+                ClicksUpdate update = (ClicksUpdate) payload;
+                writeString(out, update.shortPath());
+                out.writeInt(update.clicksCounter());
+            }
+            case USER_SAVE -> writeUser(out, (User) payload);
+            case URL_SAVE_BATCH -> {
+                List<?> shortUrls = (List<?>) payload;
+                out.writeInt(shortUrls.size());
+                for (Object shortUrl : shortUrls) writeShortUrl(out, (ShortUrl) shortUrl);
+            }
+            case URL_DELETE_BATCH -> {
+                List<?> paths = (List<?>) payload;
+                out.writeInt(paths.size());
+                for (Object path : paths) writeString(out, (String) path);
+            }
+        }
+    }
+
+    public static Object read(DataInput in, WalRecordType type) throws IOException {
+        return switch (type) {
+            case URL_SAVE -> readShortUrl(in);
+            case URL_DELETE -> readString(in);
+            case URL_CLICKS -> new ClicksUpdate(readString(in), in.readInt());
+            case USER_SAVE -> readUser(in);
+            case URL_SAVE_BATCH -> {
+                int count = in.readInt();
+                List<ShortUrl> shortUrls = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) shortUrls.add(readShortUrl(in));
+                yield shortUrls;
+            }
+            case URL_DELETE_BATCH -> {
+                int count = in.readInt();
+                List<String> paths = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) paths.add(readString(in));
+                yield paths;
+            }
+        };
+    }
+
+    // Чтение напрямую из буфера (например, отображённого в память файла снимка)
+    public static Object read(ByteBuffer in, WalRecordType type) {
+        return switch (type) {
+            case URL_SAVE -> readShortUrl(in);
+            case URL_DELETE -> readString(in);
+            case URL_CLICKS -> new ClicksUpdate(readString(in), in.getInt());
+            case USER_SAVE -> readUser(in);
+            case URL_SAVE_BATCH -> {
+                int count = in.getInt();
+                List<ShortUrl> shortUrls = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) shortUrls.add(readShortUrl(in));
+                yield shortUrls;
+            }
+            case URL_DELETE_BATCH -> {
+                int count = in.getInt();
+                List<String> paths = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) paths.add(readString(in));
+                yield paths;
+            }
+        };
+    }
+
+    public static void writeShortUrl(DataOutput out, ShortUrl shortUrl) throws IOException {
+        out.writeLong(shortUrl.getId());
+        writeString(out, shortUrl.getShortPath());
+        writeString(out, shortUrl.getOriginalUrl());
+        writeUuid(out, shortUrl.getUserUuid());
+        writeTime(out, shortUrl.getCreatedAt());
+        writeTime(out, shortUrl.getExpiresAt());
+        out.writeInt(shortUrl.getClicksLimit());
+        out.writeInt(shortUrl.getClicksCounter());
+        out.writeBoolean(shortUrl.isActive());
+    }
+
+    public static ShortUrl readShortUrl(DataInput in) throws IOException {
+        return ShortUrl.builder()
+                .id(in.readLong())
+                .shortPath(readString(in))
+                .originalUrl(readString(in))
+                .userUuid(readUuid(in))
+                .createdAt(readTime(in))
+                .expiresAt(readTime(in))
+                .clicksLimit(in.readInt())
+                .clicksCounter(in.readInt())
+                .isActive(in.readBoolean())
+                .build();
+    }
+
+    public static ShortUrl readShortUrl(ByteBuffer in) {
+        return ShortUrl.builder()
+                .id(in.getLong())
+                .shortPath(readString(in))
+                .originalUrl(readString(in))
+                .userUuid(new UUID(in.getLong(), in.getLong()))
+                .createdAt(toTime(in.getLong()))
+                .expiresAt(toTime(in.getLong()))
+                .clicksLimit(in.getInt())
+                .clicksCounter(in.getInt())
+                .isActive(in.get() != 0)
+                .build();
+    }
+
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        writeUuid(out, user.getUUID());
+        writeString(out, user.getUsername());
+    }
+
+    public static User readUser(DataInput in) throws IOException {
+        return new User(readUuid(in), readString(in));
+    }
+
+    public static User readUser(ByteBuffer in) {
+        return new User(new UUID(in.getLong(), in.getLong()), readString(in));
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : NO_TIME);
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        return toTime(in.readLong());
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return millis != NO_TIME ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+}
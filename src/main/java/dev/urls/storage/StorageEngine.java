@@ -0,0 +1,237 @@
+package dev.urls.storage;
+
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+import dev.urls.repository.impl.PersistentUrlRepository;
+import dev.urls.repository.impl.PersistentUserRepository;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Долговременное хранилище: снимок состояния + журнал изменений после него.
+// При старте загружается снимок и поверх него проигрывается журнал. Когда в журнале накапливается
+// достаточно записей, поток записи журнала сохраняет новый снимок и обнуляет журнал (компакция).
+//
+// Формат снимка: [magic][version][разделы с записями...][таблица разделов][смещение таблицы].
+// Разделы независимы, поэтому при старте они отображаются в память и разбираются параллельно.
+public class StorageEngine implements Closeable {
+    private static final String LOG_FILE = "wal.log";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x55524c53;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int PARTITION_RECORDS = 65_536;
+
+    private final Path dir;
+    private final UrlRepository urls;
+    private final UserRepository users;
+    private final WriteAheadLog wal;
+    private final long snapshotThreshold;
+    private final boolean snapshotOnShutdown;
+
+    private record Partition(long offset, long length, int records) {
+    }
+
+    private StorageEngine(AppConfig config, UrlRepository urls, UserRepository users) throws IOException {
+        this.dir = Path.of(config.getStorageDir());
+        this.urls = urls;
+        this.users = users;
+        this.snapshotThreshold = config.getStorageSnapshotThreshold();
+        this.snapshotOnShutdown = config.isStorageSnapshotOnShutdown();
+        Files.createDirectories(dir);
+        this.wal = new WriteAheadLog(dir.resolve(LOG_FILE), config.isStorageWalSync(), config.getStorageWalBatchSize());
+    }
+
+    // Восстанавливает состояние в переданные in-memory репозитории и запускает запись журнала
+    public static StorageEngine open(AppConfig config, UrlRepository urls, UserRepository users) throws IOException {
+        StorageEngine engine = new StorageEngine(config, urls, users);
+        long start = System.nanoTime();
+        long snapshotRecords = engine.loadSnapshot();
+        long snapshotLoaded = System.nanoTime();
+        long logRecords = engine.wal.replay(engine::apply);
+        long logReplayed = System.nanoTime();
+        engine.wal.start(engine::compactIfNeeded);
+        System.out.printf("Данные загружены за %d мс: снимок %d записей (%d мс), журнал %d записей (%d мс)%n",
+                (logReplayed - start) / 1_000_000,
+                snapshotRecords, (snapshotLoaded - start) / 1_000_000,
+                logRecords, (logReplayed - snapshotLoaded) / 1_000_000);
+        return engine;
+    }
+
+    public UrlRepository getUrlRepository() {
+        return new PersistentUrlRepository(urls, wal);
+    }
+
+    public UserRepository getUserRepository() {
+        return new PersistentUserRepository(users, wal);
+    }
+
+    // Дописывает очередь журнала и, если включено, сохраняет снимок, чтобы следующий старт не проигрывал журнал
+    @Override
+    public void close() throws IOException {
+        close(snapshotOnShutdown);
+    }
+
+    // Снимок можно сохранить принудительно, например после загрузки данных в обход журнала
+    public void close(boolean snapshot) throws IOException {
+        wal.stop();
+        if (snapshot) {
+            writeSnapshot();
+            wal.truncate();
+        }
+        wal.close();
+    }
+
+    private void apply(WalRecordType type, Object payload) {
+        apply(urls, users, type, payload);
+    }
+
+    // Применяет запись журнала к репозиториям; используется и при восстановлении, и репликами
+    public static void apply(UrlRepository urls, UserRepository users, WalRecordType type, Object payload) {
+        switch (type) {
+            case URL_SAVE -> urls.save((ShortUrl) payload);
+            case URL_DELETE -> urls.delete((String) payload);
+            case URL_CLICKS -> {
+                RecordCodec.ClicksUpdate update = (RecordCodec.ClicksUpdate) payload;
+                urls.updateClicksCounter(update.shortPath(), update.clicksCounter());
+            }
+            case USER_SAVE -> users.save((User) payload);
+            case URL_SAVE_BATCH -> ((List<?>) payload).forEach(shortUrl -> urls.save((ShortUrl) shortUrl));
+            case URL_DELETE_BATCH -> ((List<?>) payload).forEach(path -> urls.delete((String) path));
+        }
+    }
+
+    // Выполняется в потоке записи журнала между пачками: всё, что уже записано в журнал,
+    // к этому моменту применено в памяти и попадёт в снимок, поэтому журнал можно обнулить
+    private void compactIfNeeded() {
+        if (wal.getRecordsSinceTruncate() < snapshotThreshold) return;
+        try {
+            writeSnapshot();
+            wal.truncate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long loadSnapshot() throws IOException {
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) return 0;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_SIZE);
+            if (header.getInt() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Неподдерживаемый формат снимка: " + snapshot);
+            }
+            List<Partition> partitions = readPartitionTable(channel);
+
+            // Каждый раздел отображается отдельно, так что размер файла не ограничен 2 ГБ одного буфера
+            AtomicLong loaded = new AtomicLong();
+            partitions.parallelStream().forEach(partition -> {
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, partition.offset(), partition.length());
+                    for (int i = 0; i < partition.records(); i++) {
+                        WalRecordType type = WalRecordType.fromCode(buffer.get());
+                        apply(type, RecordCodec.read(buffer, type));
+                    }
+                    loaded.addAndGet(partition.records());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return loaded.get();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static List<Partition> readPartitionTable(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long tableOffset = channel.map(FileChannel.MapMode.READ_ONLY, size - Long.BYTES, Long.BYTES).getLong();
+        ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, size - Long.BYTES - tableOffset);
+        int count = table.getInt();
+        List<Partition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new Partition(table.getLong(), table.getLong(), table.getInt()));
+        }
+        return partitions;
+    }
+
+    private void writeSnapshot() throws IOException {
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            PartitionWriter writer = new PartitionWriter(file.getChannel(), out);
+            users.forEach(user -> writer.write(WalRecordType.USER_SAVE, user));
+            urls.forEach(shortUrl -> writer.write(WalRecordType.URL_SAVE, shortUrl));
+            List<Partition> partitions = writer.finish();
+
+            long tableOffset = writer.position();
+            out.writeInt(partitions.size());
+            for (Partition partition : partitions) {
+                out.writeLong(partition.offset());
+                out.writeLong(partition.length());
+                out.writeInt(partition.records());
+            }
+            out.writeLong(tableOffset);
+            out.flush();
+            file.getFD().sync();
+        }
+        // Атомарная замена: при сбое остаётся либо старый, либо новый снимок целиком
+        Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Пишет записи потоком и закрывает раздел каждые PARTITION_RECORDS записей
+    private static class PartitionWriter {
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final List<Partition> partitions = new ArrayList<>();
+        private long partitionStart = SNAPSHOT_HEADER_SIZE;
+        private int partitionRecords;
+
+        PartitionWriter(FileChannel channel, DataOutputStream out) {
+            this.channel = channel;
+            this.out = out;
+        }
+
+        void write(WalRecordType type, Object payload) {
+            try {
+                out.writeByte(type.getCode());
+                RecordCodec.write(out, type, payload);
+                if (++partitionRecords == PARTITION_RECORDS) closePartition();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        List<Partition> finish() throws IOException {
+            if (partitionRecords > 0) closePartition();
+            return partitions;
+        }
+
+        long position() throws IOException {
+            out.flush();
+            return channel.position();
+        }
+
+        private void closePartition() throws IOException {
+            long end = position();
+            partitions.add(new Partition(partitionStart, end - partitionStart, partitionRecords));
+            partitionStart = end;
+            partitionRecords = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dev.urls.storage;
+
+// Типы записей журнала. Все записи идемпотентны: повторное применение даёт то же состояние,
+// поэтому журнал можно безопасно проигрывать поверх более нового снимка.
+public enum WalRecordType {
+    URL_SAVE(1),
+    URL_DELETE(2),
+    URL_CLICKS(3),
+    USER_SAVE(4),
+    // Пакетное создание и удаление ссылок: одна запись на пачку
+    URL_SAVE_BATCH(5),
+    URL_DELETE_BATCH(6);
+
+    private final byte code;
+
+    WalRecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static WalRecordType fromCode(byte code) {
+        for (WalRecordType type : values()) {
+            if (type.code == code) return type;
+        }
+        throw new IllegalArgumentException("Неизвестный тип записи журнала: " + code);
+    }
+}
@@ -0,0 +1,227 @@
+package dev.urls.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Журнал упреждающей записи: [длина][тип][данные][crc32c] подряд в одном файле.
+// Пишет один фоновый поток: он забирает из очереди сразу пачку записей и делает
+// один fsync на всю пачку (group commit), так что параллельные писатели делят стоимость сброса на диск.
+// Ошибка в пачке (запись, кодирование или afterBatch) завершает ожидание её писателей ошибкой, но не останавливает поток.
+// После остановки потока записи новые записи не принимаются, а оставшиеся в очереди завершаются ошибкой,
+// чтобы appendAndWait не ждал вечно.
+public class WriteAheadLog implements Closeable {
+    private static final int POLL_TIMEOUT_MS = 100;
+
+    private final FileChannel channel;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final boolean sync;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile Runnable afterBatch = () -> { };
+    private volatile boolean running = true;
+    // Принимаются ли новые записи; меняется под lifecycle вместе с проверкой в enqueue
+    private final Object lifecycle = new Object();
+    private boolean accepting = true;
+    private long recordsSinceTruncate;
+
+    private record Entry(WalRecordType type, Object payload, CompletableFuture<Void> durable) {
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void apply(WalRecordType type, Object payload);
+    }
+
+    public WriteAheadLog(Path file, boolean sync, int batchSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.sync = sync;
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    // Проигрывает журнал и отрезает недописанный хвост (например, после аварийного завершения)
+    public long replay(RecordHandler handler) throws IOException {
+        long records = 0;
+        long validEnd = 0;
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > channel.size()) break;
+                byte typeCode = in.readByte();
+                byte[] data = new byte[length];
+                in.readFully(data);
+                int crc = in.readInt();
+                if (crc != checksum(typeCode, data)) break;
+                WalRecordType type = WalRecordType.fromCode(typeCode);
+                handler.apply(type, RecordCodec.read(new DataInputStream(new ByteArrayInputStream(data)), type));
+                validEnd += Integer.BYTES + 1 + length + Integer.BYTES;
+                records++;
+            }
+        } catch (EOFException ignored) {
+            // Конец журнала или оборванная последняя запись
+        }
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        recordsSinceTruncate = records;
+        return records;
+    }
+
+    public void start(Runnable afterBatch) {
+        this.afterBatch = afterBatch;
+        writer.start();
+    }
+
+    // Запись без ожидания сброса на диск: используется для частых событий вроде кликов
+    public void append(WalRecordType type, Object payload) {
+        enqueue(new Entry(type, payload, null));
+    }
+
+    // Запись с ожиданием, пока пачка с ней не будет сброшена на диск
+    public void appendAndWait(WalRecordType type, Object payload) {
+        await(appendDurable(type, payload));
+    }
+
+    // Постановка в очередь отдельно от ожидания: вызывающий может поставить запись под своей блокировкой,
+    // задав порядок в журнале, а ждать сброса на диск уже без неё
+    public CompletableFuture<Void> appendDurable(WalRecordType type, Object payload) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        enqueue(new Entry(type, payload, durable));
+        return durable;
+    }
+
+    public static void await(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException failure) throw failure;
+            throw new IllegalStateException("Ошибка записи журнала", e.getCause());
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        synchronized (lifecycle) {
+            if (!accepting) throw new IllegalStateException("Журнал остановлен, изменение не сохранено");
+            queue.add(entry);
+        }
+    }
+
+    // Вызывается только из потока записи (через afterBatch), поэтому не конкурирует с записью пачек
+    public long getRecordsSinceTruncate() {
+        return recordsSinceTruncate;
+    }
+
+    public void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        recordsSinceTruncate = 0;
+    }
+
+    // Останавливает поток записи, предварительно дописав всё, что стоит в очереди
+    public void stop() {
+        synchronized (lifecycle) {
+            accepting = false;
+        }
+        running = false;
+        if (!writer.isAlive()) return;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        channel.close();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Entry first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch, buffer, payload);
+                    afterBatch.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Throwable e) {
+                    System.out.println("Ошибка записи журнала: " + e);
+                    RuntimeException failure = e instanceof IOException io ? new UncheckedIOException(io)
+                            : e instanceof RuntimeException runtime ? runtime
+                            : new IllegalStateException("Ошибка записи журнала", e);
+                    fail(batch, failure);
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            synchronized (lifecycle) {
+                accepting = false;
+            }
+            queue.drainTo(batch);
+            fail(batch, new IllegalStateException("Журнал остановлен, изменение не сохранено"));
+        }
+    }
+
+    // Уже сброшенные записи пачки завершены успешно, completeExceptionally на них не действует
+    private static void fail(List<Entry> batch, RuntimeException failure) {
+        for (Entry entry : batch) {
+            if (entry.durable() != null) entry.durable().completeExceptionally(failure);
+        }
+    }
+
+    private void writeBatch(List<Entry> batch, ByteArrayOutputStream buffer, ByteArrayOutputStream payload) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        for (Entry entry : batch) {
+            payload.reset();
+            RecordCodec.write(payloadOut, entry.type(), entry.payload());
+            byte[] data = payload.toByteArray();
+            out.writeInt(data.length);
+            out.writeByte(entry.type().getCode());
+            out.write(data);
+            out.writeInt(checksum(entry.type().getCode(), data));
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        if (sync) channel.force(false);
+        recordsSinceTruncate += batch.size();
+        for (Entry entry : batch) {
+            if (entry.durable() != null) entry.durable().complete(null);
+        }
+    }
+
+    private static int checksum(byte typeCode, byte[] data) {
+        CRC32C crc = new CRC32C();
+        crc.update(typeCode);
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,370 @@
+package dev.urls.ui;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import dev.urls.cluster.ClusterRouter;
+import dev.urls.cluster.HashRing;
+import dev.urls.config.AppConfig;
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+import dev.urls.repository.UrlRepository;
+import dev.urls.repository.UserRepository;
+import dev.urls.service.impl.UrlServiceImpl;
+import dev.urls.storage.NdjsonCodec;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Передача запросов узлу-владельцу и служебный API кластера для перебалансировки (ClusterTool).
+// Служебный API принимает только запросы с общим секретом узлов (заголовок ClusterRouter.SECRET_HEADER),
+// остальным отвечает 403.
+//
+//   GET    /api/cluster                     состояние узла строками "ключ=значение"
+//   GET    /api/cluster/ring                текущий состав кольца через запятую
+//   PUT    /api/cluster/ring                новый состав кольца в теле
+//   PUT    /api/cluster/ring/pending        кольцо, на которое идёт перебалансировка (пустое тело — отмена):
+//                                           ссылки, уходящие другим узлам, перестают изменяться
+//   GET    /api/cluster/users               все пользователи в NDJSON
+//   PUT    /api/cluster/users               добавить пользователей из NDJSON (уже известные пропускаются)
+//   GET    /api/cluster/links[?nodes=...]   ссылки этого узла, которые по кольцу nodes (по умолчанию текущему)
+//                                           принадлежат другим узлам, в NDJSON
+//   POST   /api/cluster/links[?clicks=only] принять ссылки из NDJSON; существующая ссылка обновляется.
+//                                           С clicks=only учитываются только клики уже существующих ссылок
+//   DELETE /api/cluster/links               удалить ссылки, которые по текущему кольцу принадлежат другим узлам
+public class ClusterApi {
+    private static final String API_CLUSTER = "/api/cluster";
+
+    private final ClusterRouter router;
+    private final UrlRepository urlRepository;
+    private final UserRepository userRepository;
+    private final UrlServiceImpl urlService;
+    private final AppConfig config;
+    private final LongAdder forwarded = new LongAdder();
+
+    public ClusterApi(ClusterRouter router, UrlRepository urlRepository, UserRepository userRepository,
+                      UrlServiceImpl urlService, AppConfig config) {
+        this.router = router;
+        this.urlRepository = urlRepository;
+        this.userRepository = userRepository;
+        this.urlService = urlService;
+        this.config = config;
+    }
+
+    public ClusterRouter getRouter() {
+        return router;
+    }
+
+    // Сколько запросов передано другим узлам
+    public long getForwardedCount() {
+        return forwarded.sum();
+    }
+
+    // Запрос уже передан другим узлом. Заголовку без секрета не верим: иначе клиент мог бы обойти маршрутизацию
+    boolean isForwarded(HttpExchange exchange) {
+        return exchange.getRequestHeaders().containsKey(ClusterRouter.FORWARDED_HEADER) && isTrusted(exchange);
+    }
+
+    private boolean isTrusted(HttpExchange exchange) {
+        return router.isTrusted(exchange.getRequestHeaders().getFirst(ClusterRouter.SECRET_HEADER));
+    }
+
+    // Если ключ принадлежит другому узлу, передаёт ему запрос (или отвечает 307 на него) и возвращает true.
+    // Тело запроса при этом не должно быть прочитано
+    boolean routeToOwner(HttpExchange exchange, String key) throws IOException {
+        if (key.isEmpty() || isForwarded(exchange)) return false;
+        String owner = router.ownerOf(key);
+        if (owner.equals(router.getSelf())) return false;
+        forwarded.increment();
+        String uri = exchange.getRequestURI().getRawPath();
+        if (exchange.getRequestURI().getRawQuery() != null) uri += "?" + exchange.getRequestURI().getRawQuery();
+        if (!router.isProxy()) {
+            // 307, а не 302: клиент повторит тот же метод с тем же телом
+            exchange.getResponseHeaders().set("Location", "http://" + owner + uri);
+            exchange.sendResponseHeaders(307, -1);
+            return true;
+        }
+        HttpRequest.BodyPublisher body = hasBody(exchange.getRequestHeaders()) ?
+                HttpRequest.BodyPublishers.ofInputStream(exchange::getRequestBody) : HttpRequest.BodyPublishers.noBody();
+        forward(exchange, owner, exchange.getRequestMethod(), uri, body);
+        return true;
+    }
+
+    // Передаёт запрос узлу owner и копирует его ответ клиенту
+    void forward(HttpExchange exchange, String owner, String method, String uri, HttpRequest.BodyPublisher body)
+            throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = router.send(owner, method, uri, body);
+        } catch (IOException e) {
+            HttpUI.send(exchange, 502, "Узел " + owner + " недоступен: " + e.getMessage());
+            return;
+        }
+        for (String header : List.of("Location", "Content-Type")) {
+            response.headers().firstValue(header).ifPresent(value -> exchange.getResponseHeaders().set(header, value));
+        }
+        // Длина как у владельца: 0 у HttpExchange означает ответ частями, -1 — ответ без тела
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        if (response.headers().firstValue("Content-Length").isPresent() && length == 0) length = -1;
+        try (InputStream in = response.body()) {
+            exchange.sendResponseHeaders(response.statusCode(), length);
+            if (length != -1) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    in.transferTo(out);
+                }
+            }
+        }
+    }
+
+    private static boolean hasBody(Headers headers) {
+        String length = headers.getFirst("Content-Length");
+        return headers.containsKey("Transfer-Encoding") || (length != null && !"0".equals(length.strip()));
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!isTrusted(exchange)) {
+                HttpUI.send(exchange, 403, "Служебный API кластера доступен только узлам кластера");
+                return;
+            }
+            String resource = exchange.getRequestURI().getPath().substring(API_CLUSTER.length());
+            String method = exchange.getRequestMethod();
+            switch (resource) {
+                case "", "/" -> {
+                    if ("GET".equals(method)) status(exchange);
+                    else HttpUI.send(exchange, 405, "Метод не поддерживается");
+                }
+                case "/ring" -> {
+                    switch (method) {
+                        case "GET" -> HttpUI.send(exchange, 200, router.getRing().toString());
+                        case "PUT" -> updateRing(exchange);
+                        default -> HttpUI.send(exchange, 405, "Метод не поддерживается");
+                    }
+                }
+                case "/ring/pending" -> {
+                    if ("PUT".equals(method)) updatePendingRing(exchange);
+                    else HttpUI.send(exchange, 405, "Метод не поддерживается");
+                }
+                case "/users" -> {
+                    switch (method) {
+                        case "GET" -> exportUsers(exchange);
+                        case "PUT" -> importUsers(exchange);
+                        default -> HttpUI.send(exchange, 405, "Метод не поддерживается");
+                    }
+                }
+                case "/links" -> {
+                    switch (method) {
+                        case "GET" -> exportLinks(exchange);
+                        case "POST" -> {
+                            if ("only".equals(queryParam(exchange, "clicks"))) importClicks(exchange);
+                            else importLinks(exchange);
+                        }
+                        case "DELETE" -> deleteForeignLinks(exchange);
+                        default -> HttpUI.send(exchange, 405, "Метод не поддерживается");
+                    }
+                }
+                default -> HttpUI.send(exchange, 404, "Неизвестный ресурс кластера");
+            }
+        }
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        HashRing ring = router.getRing();
+        long[] counts = new long[2];
+        urlRepository.forEach(shortUrl -> {
+            counts[0]++;
+            if (!ring.ownerOf(shortUrl.getShortPath()).equals(router.getSelf())) counts[1]++;
+        });
+        Runtime runtime = Runtime.getRuntime();
+        HttpUI.send(exchange, 200, "self=" + router.getSelf() + "\n"
+                + "ring=" + ring + "\n"
+                + "pendingRing=" + (router.getPendingRing() != null ? router.getPendingRing() : "") + "\n"
+                + "member=" + ring.contains(router.getSelf()) + "\n"
+                + "links=" + counts[0] + "\n"
+                + "foreign=" + counts[1] + "\n"
+                + "forwarded=" + forwarded.sum() + "\n"
+                + "heapUsed=" + (runtime.totalMemory() - runtime.freeMemory()) + "\n");
+    }
+
+    private void updateRing(HttpExchange exchange) throws IOException {
+        String nodes = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            router.setRing(nodes);
+            HttpUI.send(exchange, 200, router.getRing().toString());
+        } catch (IllegalArgumentException e) {
+            HttpUI.send(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void updatePendingRing(HttpExchange exchange) throws IOException {
+        String nodes = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            router.setPendingRing(nodes);
+            HttpUI.send(exchange, 200, String.valueOf(router.getPendingRing()));
+        } catch (IllegalArgumentException e) {
+            HttpUI.send(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void exportUsers(HttpExchange exchange) throws IOException {
+        streamNdjson(exchange, (out, line) -> userRepository.forEach(user -> {
+            NdjsonCodec.writeUser(line, user);
+            flushLine(out, line);
+        }));
+    }
+
+    private void importUsers(HttpExchange exchange) throws IOException {
+        BufferedReader body = reader(exchange);
+        int saved = 0;
+        String line;
+        while ((line = body.readLine()) != null) {
+            if (line.isBlank() || !(NdjsonCodec.read(line) instanceof User user)) continue;
+            if (userRepository.findByUuid(user.getUUID()).isPresent()) continue;
+            if (userRepository.saveIfAbsent(user)) {
+                saved++;
+            } else {
+                System.out.println("Кластер: имя " + user.getUsername() + " уже занято другим пользователем, пропущено");
+            }
+        }
+        HttpUI.send(exchange, 200, String.valueOf(saved));
+    }
+
+    private void exportLinks(HttpExchange exchange) throws IOException {
+        String nodes = queryParam(exchange, "nodes");
+        HashRing ring;
+        try {
+            ring = nodes != null ? HashRing.parse(nodes, router.getRing().getVnodes()) : router.getRing();
+        } catch (IllegalArgumentException e) {
+            HttpUI.send(exchange, 400, e.getMessage());
+            return;
+        }
+        streamNdjson(exchange, (out, line) -> urlRepository.forEach(shortUrl -> {
+            if (ring.ownerOf(shortUrl.getShortPath()).equals(router.getSelf())) return;
+            NdjsonCodec.writeShortUrl(line, shortUrl);
+            flushLine(out, line);
+        }));
+    }
+
+    // Копирование до переключения кольца: запросы по этим путям ещё идут старому владельцу, поэтому его копия главнее.
+    // Ссылки получают id этого узла: id других узлов могут совпасть с местными.
+    // Если ссылка уже есть (повторный проход перебалансировки), берётся большее число кликов
+    private void importLinks(HttpExchange exchange) throws IOException {
+        BufferedReader body = reader(exchange);
+        List<ShortUrl> fresh = new ArrayList<>(config.getUrlBatchSize());
+        int accepted = 0;
+        String line;
+        while ((line = body.readLine()) != null) {
+            if (line.isBlank() || !(NdjsonCodec.read(line) instanceof ShortUrl shortUrl)) continue;
+            Optional<ShortUrl> existing = urlRepository.findByPath(shortUrl.getShortPath());
+            if (existing.isPresent()) {
+                shortUrl.setId(existing.get().getId());
+                shortUrl.setOriginalUrl(existing.get().getOriginalUrl());
+                shortUrl.setClicksCounter(Math.max(shortUrl.getClicksCounter(), existing.get().getClicksCounter()));
+                if (shortUrl.getClicksCounter() >= shortUrl.getClicksLimit()) shortUrl.setActive(false);
+                urlRepository.save(shortUrl);
+                urlService.invalidate(shortUrl.getShortPath());
+                accepted++;
+            } else {
+                fresh.add(shortUrl);
+                if (fresh.size() == config.getUrlBatchSize()) {
+                    accepted += saveFresh(fresh);
+                    fresh.clear();
+                }
+            }
+        }
+        accepted += saveFresh(fresh);
+        HttpUI.send(exchange, 200, String.valueOf(accepted));
+    }
+
+    // Проход после переключения кольца: ссылки уже изменяют и удаляют на этом узле, поэтому со старого владельца
+    // берутся только клики, пришедшие туда до переключения. Удалённые здесь ссылки не восстанавливаются
+    private void importClicks(HttpExchange exchange) throws IOException {
+        BufferedReader body = reader(exchange);
+        int merged = 0;
+        String line;
+        while ((line = body.readLine()) != null) {
+            if (line.isBlank() || !(NdjsonCodec.read(line) instanceof ShortUrl shortUrl)) continue;
+            if (urlService.mergeClicks(shortUrl.getShortPath(), shortUrl.getClicksCounter())) merged++;
+        }
+        HttpUI.send(exchange, 200, String.valueOf(merged));
+    }
+
+    private int saveFresh(List<ShortUrl> shortUrls) {
+        if (shortUrls.isEmpty()) return 0;
+        long firstId = urlRepository.getNextUrlIds(shortUrls.size());
+        for (int i = 0; i < shortUrls.size(); i++) shortUrls.get(i).setId(firstId + i);
+        // Путь мог занять параллельный запрос того же прохода: такие ссылки уже приняты
+        Set<ShortUrl> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        rejected.addAll(urlRepository.saveAllIfAbsent(shortUrls));
+        for (ShortUrl shortUrl : shortUrls) {
+            if (!rejected.contains(shortUrl)) urlService.adopt(shortUrl);
+            urlService.invalidate(shortUrl.getShortPath());
+        }
+        return shortUrls.size();
+    }
+
+    private void deleteForeignLinks(HttpExchange exchange) throws IOException {
+        HashRing ring = router.getRing();
+        List<String> foreign = new ArrayList<>();
+        urlRepository.forEach(shortUrl -> {
+            if (!ring.ownerOf(shortUrl.getShortPath()).equals(router.getSelf())) foreign.add(shortUrl.getShortPath());
+        });
+        int deleted = 0;
+        for (int from = 0; from < foreign.size(); from += config.getUrlBatchSize()) {
+            deleted += urlService.deleteShortUrls(foreign.subList(from, Math.min(from + config.getUrlBatchSize(), foreign.size())));
+        }
+        HttpUI.send(exchange, 200, String.valueOf(deleted));
+    }
+
+    private interface NdjsonWriter {
+        void write(Writer out, StringBuilder line);
+    }
+
+    private static void streamNdjson(HttpExchange exchange, NdjsonWriter writer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+            writer.write(out, new StringBuilder());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void flushLine(Writer out, StringBuilder line) {
+        try {
+            out.append(line);
+            line.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedReader reader(HttpExchange exchange) {
+        return new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) return pair.substring(name.length() + 1);
+        }
+        return null;
+    }
+}
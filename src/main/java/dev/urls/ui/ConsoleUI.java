@@ -3,22 +3,23 @@ package dev.urls.ui;
 import dev.urls.config.AppConfig;
 import dev.urls.model.ShortUrl;
 import dev.urls.model.User;
+import dev.urls.service.UrlService;
 import dev.urls.service.UserService;
-import dev.urls.service.impl.UrlServiceImpl;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class ConsoleUI {
     private final Scanner scanner;
     private final UserService userService;
-    private final UrlServiceImpl urlService;
+    private final UrlService urlService;
     private final AppConfig config;
     private User currentUser;
 
-    public ConsoleUI(UserService userService, UrlServiceImpl urlShortenerService, AppConfig config) {
+    public ConsoleUI(UserService userService, UrlService urlShortenerService, AppConfig config) {
         this.config = config;
         this.scanner = new Scanner(System.in);
         this.userService = userService;
@@ -112,33 +113,23 @@ public class ConsoleUI {
             username = scanner.nextLine().trim();
         }
 
-        if (username.isEmpty()) {
-            do {
-                username = "User-" + String.valueOf(this.hashCode()).substring(0, 7);
-            } while (userService.findByUsername(username).isPresent());
-        } else {
-            String name = username;
-            while (true) {
-                System.out.println("-- " + name + " --");
-                if (userService.findByUsername(name).isPresent()) {
-                    System.out.println("Имя пользователя уже занято. Введите другое имя.");
-                    name = scanner.nextLine().trim();
-                } else {
-                    username = name;
-                    break;
-                }
-                if (name.isEmpty()) break;
+        // Имя занимается атомарно при создании пользователя, поэтому отдельная проверка не нужна:
+        // если имя занято, просим другое, а сгенерированное просто генерируем заново
+        while (true) {
+            boolean generated = username.isEmpty();
+            String name = generated ? "User-" + ThreadLocalRandom.current().nextInt(1_000_000, 10_000_000) : username;
+            try {
+                currentUser = userService.createUser(name);
+                System.out.println("Добрый день, " + name + ". Регистрация успешна!");
+                System.out.println("Ваш UUID: " + currentUser.getUUID());
+                System.out.println("Сохраните его для последующего входа в систему.");
+                return;
+            } catch (IllegalArgumentException e) {
+                if (generated) continue;
+                System.out.println("Имя пользователя уже занято. Введите другое имя.");
+                username = scanner.nextLine().trim();
             }
         }
-
-        try {
-            currentUser = userService.createUser(username);
-            System.out.println("Добрый день, " + username + ". Регистрация успешна!");
-            System.out.println("Ваш UUID: " + currentUser.getUUID());
-            System.out.println("Сохраните его для последующего входа в систему.");
-        } catch (IllegalArgumentException e) {
-            System.out.println("Ошибка регистрации: " + e.getMessage());
-        }
     }
 
     private void createShortUrl() {
@@ -198,6 +189,7 @@ public class ConsoleUI {
             ShortUrl url = urls.get(i);
             System.out.printf("%d. %s%n", i + 1, urlService.getShortUrlStatus(url));
         }
+        System.out.println("Все ссылки. " + urlService.getUserClickStats(currentUser.getUUID()));
     }
 
     private void openUrl() {
@@ -211,7 +203,7 @@ public class ConsoleUI {
 
     private boolean isOperationAvailable(String shortPath) {
         if (isShortUrlExists(shortPath)) {
-            if (urlService.getShortUrlOwner(shortPath).equals(currentUser.getUUID())) {
+            if (currentUser.getUUID().equals(urlService.getShortUrlOwner(shortPath))) {
                 return true;
             } else {
                 System.out.println("У Вас нет прав на манипуляции с этой ссылкой");
@@ -238,7 +230,7 @@ public class ConsoleUI {
 
     private String getShortUrlStatus(String shortPath) {
         if (isOperationAvailable(shortPath))
-            return urlService.getShortUrlStatus(urlService.findByPath(shortPath).get());
+            return urlService.findByPath(shortPath).map(urlService::getShortUrlStatus).orElse(null);
         else return null;
     }
 
@@ -0,0 +1,425 @@
+package dev.urls.ui;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.urls.config.AppConfig;
+import dev.urls.metrics.MetricsRegistry;
+import dev.urls.model.RedirectTarget;
+import dev.urls.model.ShortUrl;
+import dev.urls.model.User;
+import dev.urls.service.UrlService;
+import dev.urls.service.UserService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// HTTP-интерфейс сервиса: перенаправление по коротким ссылкам и API управления ссылками.
+// Каждый запрос обрабатывается в отдельном виртуальном потоке.
+//
+//   GET    /{shortPath}                                   302 на оригинальную ссылку
+//   POST   /api/users?username=...                        регистрация, в ответе UUID
+//   POST   /api/urls?user=...&url=...[&lifetime=&limit=]  создание короткой ссылки
+//   PUT    /api/urls/{shortPath}?user=...[&lifetime=&limit=]  изменение параметров
+//   DELETE /api/urls/{shortPath}?user=...                 удаление
+//   POST   /api/batch/urls?user=...[&lifetime=&limit=]    импорт: в теле по адресу в строке,
+//                                                         в ответе по строке "короткая ссылка<TAB>адрес"
+//   DELETE /api/batch/urls?user=...                       удаление: в теле по короткому пути в строке
+//   GET    /api/metrics                                   текстовый отчёт метрик (при metrics.enabled=true)
+//   GET    /api/replication                               состояние репликации (на ведущем узле и репликах)
+//   /api/cluster/...                                      служебный API кластера (только с cluster.secret), см. ClusterApi
+//
+// Реплика (replication.role=follower) только перенаправляет: изменения принимает ведущий узел.
+// В кластере (cluster.nodes) запросы по чужим коротким путям передаются узлу-владельцу,
+// новые ссылки создаются на принявшем запрос узле с путями из его части кольца
+public class HttpUI {
+    private static final String API_URLS = "/api/urls";
+    private static final String API_BATCH_URLS = "/api/batch/urls";
+    private static final String API_METRICS = "/api/metrics";
+    private static final String API_REPLICATION = "/api/replication";
+    private static final String API_USERS = "/api/users";
+    private static final String API_CLUSTER = "/api/cluster";
+
+    private final UserService userService;
+    private final UrlService urlService;
+    private final AppConfig config;
+    private final MetricsRegistry metrics;
+    private final Supplier<String> replicationStatus;
+    private final ClusterApi cluster;
+    private HttpServer server;
+
+    // metrics, replicationStatus и cluster могут быть null, если метрики, репликация или кластер выключены
+    public HttpUI(UserService userService, UrlService urlService, AppConfig config, MetricsRegistry metrics,
+                  Supplier<String> replicationStatus, ClusterApi cluster) {
+        this.userService = userService;
+        this.urlService = urlService;
+        this.config = config;
+        this.metrics = metrics;
+        this.replicationStatus = replicationStatus;
+        this.cluster = cluster;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.getHttpPort()), config.getHttpBacklog());
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handleRedirect);
+        if ("follower".equals(config.getReplicationRole())) {
+            server.createContext(API_URLS, this::handleReadOnly);
+            server.createContext(API_USERS, this::handleReadOnly);
+            server.createContext(API_BATCH_URLS, this::handleReadOnly);
+        } else {
+            server.createContext(API_URLS, this::handleUrls);
+            server.createContext(API_USERS, this::handleUsers);
+            server.createContext(API_BATCH_URLS, this::handleBatch);
+        }
+        if (metrics != null) server.createContext(API_METRICS, this::handleMetrics);
+        if (replicationStatus != null) server.createContext(API_REPLICATION, this::handleReplication);
+        if (cluster != null) server.createContext(API_CLUSTER, cluster::handle);
+        server.start();
+        System.out.println("HTTP-сервер запущен на порту " + config.getHttpPort());
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    private void handleRedirect(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            String shortPath = exchange.getRequestURI().getPath().substring(1);
+            if (cluster != null && cluster.routeToOwner(exchange, shortPath)) return;
+            RedirectTarget target;
+            try {
+                target = urlService.resolveRedirect(shortPath);
+            } catch (RuntimeException e) {
+                // Клиент должен получить ответ, а не оборванное соединение
+                System.out.println("Ошибка перехода по ссылке " + shortPath + ": " + e);
+                send(exchange, 500, "Внутренняя ошибка сервера");
+                return;
+            }
+            if (target != null) {
+                exchange.getResponseHeaders().set("Location", target.getLocation());
+                exchange.sendResponseHeaders(302, -1);
+            } else {
+                send(exchange, 404, "Ссылка не найдена или недоступна");
+            }
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            send(exchange, 200, metrics.getReport());
+        }
+    }
+
+    private void handleReplication(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            send(exchange, 200, replicationStatus.get());
+        }
+    }
+
+    private void handleReadOnly(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 403, "Реплика только для чтения, изменения принимает ведущий узел " + config.getReplicationLeader());
+        }
+    }
+
+    private void handleUsers(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "Метод не поддерживается");
+                return;
+            }
+            String username = readParams(exchange).getOrDefault("username", "");
+            if (username.isBlank()) {
+                send(exchange, 409, "Имя пользователя пустое или уже занято");
+                return;
+            }
+            // Имя проверяется на узле-владельце имени, он же рассылает пользователя остальным узлам
+            if (cluster != null && !cluster.isForwarded(exchange)) {
+                String owner = cluster.getRouter().ownerOfUsername(username);
+                if (!owner.equals(cluster.getRouter().getSelf())) {
+                    cluster.forward(exchange, owner, "POST",
+                            API_USERS + "?username=" + URLEncoder.encode(username, StandardCharsets.UTF_8),
+                            HttpRequest.BodyPublishers.noBody());
+                    return;
+                }
+            }
+            try {
+                User user = userService.createUser(username);
+                if (cluster != null) cluster.getRouter().broadcastUser(user);
+                send(exchange, 201, user.getUUID().toString());
+            } catch (IllegalArgumentException e) {
+                send(exchange, 409, "Имя пользователя пустое или уже занято");
+            }
+        }
+    }
+
+    private void handleUrls(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (cluster != null && cluster.routeToOwner(exchange, shortPathOf(exchange))) return;
+            try {
+                dispatchUrls(exchange);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage());
+            }
+        }
+    }
+
+    // Тело не читается в память целиком: строки обрабатываются пачками по мере чтения,
+    // а созданные ссылки сразу пишутся в ответ
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, String> params = new HashMap<>();
+            parseQuery(exchange.getRequestURI().getRawQuery(), params);
+            Optional<User> user = parseUuid(params.get("user")).flatMap(userService::findByUuid);
+            if (user.isEmpty()) {
+                send(exchange, 401, "Не указан или не найден пользователь (параметр user)");
+                return;
+            }
+            BufferedReader body = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            try {
+                switch (exchange.getRequestMethod()) {
+                    case "POST" -> importUrls(exchange, user.get(), params, body);
+                    case "DELETE" -> deleteUrls(exchange, user.get(), body);
+                    default -> send(exchange, 405, "Метод не поддерживается");
+                }
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage());
+            }
+        }
+    }
+
+    private void importUrls(HttpExchange exchange, User user, Map<String, String> params, BufferedReader body) throws IOException {
+        if (refuseIfNotMember(exchange)) return;
+        Integer lifetime = parseInt(params.get("lifetime"));
+        if (lifetime != null && lifetime <= 0) lifetime = config.getDefaultLifetimeMin();
+        Integer limit = parseInt(params.get("limit"));
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(201, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            urlService.importShortUrls(body, user.getUUID(), lifetime, limit, shortUrl -> {
+                try {
+                    out.write(urlService.getFullShortUrl(shortUrl.getShortPath()) + "\t" + shortUrl.getOriginalUrl() + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    // Чужие и несуществующие пути пропускаются; в ответе число удалённых ссылок.
+    // В кластере пути других узлов отправляются их владельцам пачками того же размера
+    private void deleteUrls(HttpExchange exchange, User user, BufferedReader body) throws IOException {
+        List<String> paths = new ArrayList<>(config.getUrlBatchSize());
+        Map<String, List<String>> remote = new HashMap<>();
+        boolean route = cluster != null && !cluster.isForwarded(exchange);
+        int deleted = 0;
+        int moving = 0;
+        String line;
+        while ((line = body.readLine()) != null) {
+            String shortPath = line.strip();
+            if (shortPath.isEmpty()) continue;
+            String owner = route ? cluster.getRouter().ownerOf(shortPath) : null;
+            if (owner != null && !owner.equals(cluster.getRouter().getSelf())) {
+                List<String> part = remote.computeIfAbsent(owner, node -> new ArrayList<>());
+                part.add(shortPath);
+                if (part.size() == config.getUrlBatchSize()) {
+                    deleted += deleteRemote(owner, user, part);
+                    part.clear();
+                }
+                continue;
+            }
+            Optional<ShortUrl> shortUrl = urlService.getShortUrl(shortPath);
+            if (shortUrl.isEmpty() || !shortUrl.get().getUserUuid().equals(user.getUUID())) continue;
+            if (cluster != null && cluster.getRouter().isMoving(shortPath)) {
+                moving++;
+                continue;
+            }
+            paths.add(shortPath);
+            if (paths.size() == config.getUrlBatchSize()) {
+                deleted += urlService.deleteShortUrls(paths);
+                paths.clear();
+            }
+        }
+        if (!paths.isEmpty()) deleted += urlService.deleteShortUrls(paths);
+        for (Map.Entry<String, List<String>> part : remote.entrySet()) {
+            if (!part.getValue().isEmpty()) deleted += deleteRemote(part.getKey(), user, part.getValue());
+        }
+        if (moving > 0) {
+            send(exchange, 503, "Удалено ссылок: " + deleted + ", не удалено переносимых на другой узел: " + moving
+                    + ", повторите запрос позже");
+            return;
+        }
+        send(exchange, 200, String.valueOf(deleted));
+    }
+
+    private int deleteRemote(String owner, User user, List<String> paths) throws IOException {
+        HttpResponse<InputStream> response = cluster.getRouter().send(owner, "DELETE",
+                API_BATCH_URLS + "?user=" + user.getUUID(), HttpRequest.BodyPublishers.ofString(String.join("\n", paths)));
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8).strip();
+        }
+        if (response.statusCode() != 200) throw new IOException("Узел " + owner + " ответил " + response.statusCode() + ": " + body);
+        return Integer.parseInt(body);
+    }
+
+    private void dispatchUrls(HttpExchange exchange) throws IOException {
+        Map<String, String> params = readParams(exchange);
+        Optional<User> user = parseUuid(params.get("user")).flatMap(userService::findByUuid);
+        if (user.isEmpty()) {
+            send(exchange, 401, "Не указан или не найден пользователь (параметр user)");
+            return;
+        }
+        String shortPath = shortPathOf(exchange);
+
+        switch (exchange.getRequestMethod()) {
+            case "POST" -> createUrl(exchange, user.get(), params);
+            case "PUT" -> updateUrl(exchange, user.get(), shortPath, params);
+            case "DELETE" -> deleteUrl(exchange, user.get(), shortPath);
+            default -> send(exchange, 405, "Метод не поддерживается");
+        }
+    }
+
+    private static String shortPathOf(HttpExchange exchange) {
+        String shortPath = exchange.getRequestURI().getPath().substring(API_URLS.length());
+        return shortPath.startsWith("/") ? shortPath.substring(1) : shortPath;
+    }
+
+    // Узел, выведенный из кольца, не владеет ни одним путём и не может создавать ссылки
+    private boolean refuseIfNotMember(HttpExchange exchange) throws IOException {
+        if (cluster == null || cluster.getRouter().isMember()) return false;
+        send(exchange, 503, "Узел выведен из кластера, создавайте ссылки на узлах " + cluster.getRouter().getRing());
+        return true;
+    }
+
+    private void createUrl(HttpExchange exchange, User user, Map<String, String> params) throws IOException {
+        if (refuseIfNotMember(exchange)) return;
+        String originalUrl = params.get("url");
+        if (originalUrl == null) {
+            send(exchange, 400, "Не указан параметр url");
+            return;
+        }
+        Integer lifetime = parseInt(params.get("lifetime"));
+        if (lifetime != null && lifetime <= 0) lifetime = config.getDefaultLifetimeMin();
+        ShortUrl shortUrl = urlService.createShortUrl(originalUrl, user.getUUID(), lifetime, parseInt(params.get("limit")));
+        send(exchange, 201, urlService.getFullShortUrl(shortUrl.getShortPath()));
+    }
+
+    // Ссылку, которую переносят на другой узел, не меняем: изменение не попало бы в последнюю копию
+    private boolean refuseIfMoving(HttpExchange exchange, String shortPath) throws IOException {
+        if (cluster == null || !cluster.getRouter().isMoving(shortPath)) return false;
+        send(exchange, 503, "Ссылка переносится на другой узел кластера, повторите запрос позже");
+        return true;
+    }
+
+    private void updateUrl(HttpExchange exchange, User user, String shortPath, Map<String, String> params) throws IOException {
+        if (!isOwner(exchange, user, shortPath) || refuseIfMoving(exchange, shortPath)) return;
+        Integer limit = parseInt(params.get("limit"));
+        Integer lifetime = parseInt(params.get("lifetime"));
+        if (limit != null) urlService.updateUrlClicksLimit(shortPath, limit > 0 ? limit : config.getDefaultClicksLimit());
+        if (lifetime != null) urlService.updateUrlLifeTime(shortPath, lifetime > 0 ? lifetime : config.getDefaultLifetimeMin());
+        Optional<ShortUrl> updated = urlService.findByPath(shortPath);
+        if (updated.isPresent()) {
+            send(exchange, 200, urlService.getShortUrlStatus(updated.get()));
+        } else {
+            send(exchange, 404, "Ссылка устарела и была удалена");
+        }
+    }
+
+    private void deleteUrl(HttpExchange exchange, User user, String shortPath) throws IOException {
+        if (!isOwner(exchange, user, shortPath) || refuseIfMoving(exchange, shortPath)) return;
+        urlService.deleteShortUrl(shortPath);
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private boolean isOwner(HttpExchange exchange, User user, String shortPath) throws IOException {
+        Optional<ShortUrl> shortUrl = urlService.findByPath(shortPath);
+        if (shortUrl.isEmpty()) {
+            send(exchange, 404, "Ссылка не найдена");
+            return false;
+        }
+        if (!shortUrl.get().getUserUuid().equals(user.getUUID())) {
+            send(exchange, 403, "У Вас нет прав на манипуляции с этой ссылкой");
+            return false;
+        }
+        return true;
+    }
+
+    // Параметры берутся из строки запроса и из тела в формате application/x-www-form-urlencoded
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), params);
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (body.length > 0) parseQuery(new String(body, StandardCharsets.UTF_8), params);
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) return;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Optional<UUID> parseUuid(String value) {
+        try {
+            return value != null ? Optional.of(UUID.fromString(value)) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Integer parseInt(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный формат числа: " + value);
+        }
+    }
+
+    static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}